@@ -11,4 +11,9 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface AutoConfModule {
+
+    /**
+     * 编译时由{@link AutoConfModuleProcessor}生成的模块索引，每行为：类名=模块相对路径
+     */
+    String INDEX_LOCATION = "META-INF/xmingl/auto-conf-modules";
 }
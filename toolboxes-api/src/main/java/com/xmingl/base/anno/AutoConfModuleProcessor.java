@@ -0,0 +1,167 @@
+package com.xmingl.base.anno;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译时生成{@link AutoConfModule}模块索引<br/>
+ * 索引写入{@link AutoConfModule#INDEX_LOCATION}，每行为：类名=模块相对路径，
+ * 启动时直接读取，不再扫描类路径、也不需要实例化模块读取路径。
+ * 模块必须直接继承BaseService并有公共无参构造方法，否则编译失败<br/>
+ * 只编译部分类时（IDE增量编译）保留已有索引中仍然存在且带注解的模块
+ *
+ * @author XMINGL
+ * @version 0.0.1 模块索引
+ */
+@SupportedAnnotationTypes("com.xmingl.base.anno.AutoConfModule")
+public class AutoConfModuleProcessor extends AbstractProcessor {
+
+    private static final String BASE_SERVICE = "com.xmingl.base.service.BaseService";
+
+    /**
+     * 与BaseService计算模块路径时去掉的后缀一致
+     */
+    private static final String SERVICE_SUFFIX = "ServiceImpl";
+
+    private final Map<String, String> modules = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!roundEnv.errorRaised()) {
+                writeIndex();
+            }
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(AutoConfModule.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@AutoConfModule只能用于类");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (!isBaseService(type.getSuperclass())) {
+                error(type, "@AutoConfModule的类必须直接继承" + BASE_SERVICE);
+                continue;
+            }
+            if (!hasPublicNoArgConstructor(type)) {
+                error(type, "@AutoConfModule的类必须有公共无参构造方法");
+                continue;
+            }
+            String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+            modules.put(className, modulePath(className));
+        }
+        return false;
+    }
+
+    /**
+     * 与BaseService构造方法中的计算一致，分隔符统一为/
+     *
+     * @param className 类名
+     * @return 模块相对路径
+     */
+    static String modulePath(String className) {
+        return ("/" + className.replace(SERVICE_SUFFIX, "").replace('.', '/') + "/").toLowerCase(Locale.ROOT);
+    }
+
+    private boolean isBaseService(TypeMirror superclass) {
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals(BASE_SERVICE);
+    }
+
+    private static boolean hasPublicNoArgConstructor(TypeElement type) {
+        if (!type.getModifiers().contains(Modifier.PUBLIC) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        Map<String, String> index = new TreeMap<>();
+        readExistingIndex(index);
+        index.putAll(modules);
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", AutoConfModule.INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# 由AutoConfModuleProcessor生成，类名=模块相对路径\n");
+                for (Map.Entry<String, String> entry : index.entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写入模块索引失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取上次编译生成的索引，保留本次未编译、但仍然存在且带注解的模块
+     *
+     * @param index 索引
+     */
+    private void readExistingIndex(Map<String, String> index) {
+        FileObject file;
+        try {
+            file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", AutoConfModule.INDEX_LOCATION);
+        } catch (IOException | IllegalArgumentException e) {
+            return;
+        }
+        try (Reader in = new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8);
+             BufferedReader reader = new BufferedReader(in)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (line.startsWith("#") || separator <= 0) {
+                    continue;
+                }
+                String className = line.substring(0, separator);
+                TypeElement type = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+                if (type != null && type.getAnnotation(AutoConfModule.class) != null) {
+                    index.put(className, line.substring(separator + 1));
+                }
+            }
+        } catch (IOException e) {
+            // 没有已有索引
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
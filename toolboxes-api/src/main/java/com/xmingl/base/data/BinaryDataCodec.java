@@ -0,0 +1,469 @@
+package com.xmingl.base.data;
+
+import com.alibaba.fastjson.JSON;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 紧凑的二进制编码，适用于{@code EventInfo}这类只有简单字段的JavaBean，字段须用{@link DataField}标注序号<br/>
+ * 格式：MAGIC(1) VERSION(1) 字段...，每个字段为：标记(varint，序号 &lt;&lt; 4 | 类型) 值，不写字段名<br/>
+ * 值的编码：字符串为长度+1(varint，0表示null)与UTF-8字节，整数为zigzag varint，浮点数为8字节，
+ * 可为空的类型先写1字节是否为空，其他类型以带长度的JSON写入<br/>
+ * 解码时按序号匹配：数据中有而类型中没有、或类型不一致的字段跳过，类型中有而数据中没有的字段保持默认值，
+ * 因此增删、改名字段后旧数据仍可解码；删除字段后其序号不能再给其他字段使用
+ *
+ * @author XMINGL
+ * @version 0.0.2 按序号标记字段
+ */
+public class BinaryDataCodec implements DataCodec {
+
+    /**
+     * UTF-8的续字节，JSON文本不会以此开头
+     */
+    public static final byte MAGIC = (byte) 0xB1;
+
+    private static final byte VERSION = 1;
+
+    /**
+     * 标记中类型占的位数
+     */
+    private static final int KIND_BITS = 4;
+
+    private static final int STRING = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int BOOLEAN = 3;
+    private static final int DOUBLE = 4;
+    private static final int NULLABLE_INT = 5;
+    private static final int NULLABLE_LONG = 6;
+    private static final int NULLABLE_BOOLEAN = 7;
+    private static final int NULLABLE_DOUBLE = 8;
+    private static final int DATE = 9;
+    private static final int OBJECT = 10;
+
+    private static final ClassValue<Schema> SCHEMAS = new ClassValue<Schema>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return new Schema(type);
+        }
+    };
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        Schema schema = SCHEMAS.get(value.getClass());
+        Output out = new Output();
+        out.write(MAGIC);
+        out.write(VERSION);
+        try {
+            for (Property property : schema.properties) {
+                out.writeVarInt(property.ordinal << KIND_BITS | property.kind);
+                write(property, value, out);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] data, int offset, int length, Class<T> clazz) throws IOException {
+        if (!accepts(data, offset, length)) {
+            throw new IOException("不支持的二进制数据: " + clazz.getName());
+        }
+        if (data[offset + 1] != VERSION) {
+            throw new IOException("不支持的二进制数据版本" + data[offset + 1] + ": " + clazz.getName());
+        }
+        Schema schema = SCHEMAS.get(clazz);
+        Input in = new Input(data, offset + 2, offset + length);
+        try {
+            T value = clazz.cast(schema.constructor.newInstance());
+            while (in.position < in.end) {
+                int tag = in.readVarInt();
+                int kind = tag & ((1 << KIND_BITS) - 1);
+                Property property = schema.find(tag >>> KIND_BITS);
+                if (property == null || property.kind != kind) {
+                    skip(kind, in);
+                } else {
+                    read(property, value, in);
+                }
+            }
+            return value;
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean accepts(byte[] data, int offset, int length) {
+        return length >= 2 && data[offset] == MAGIC;
+    }
+
+    private static void write(Property property, Object target, Output out) throws IllegalAccessException {
+        Field field = property.field;
+        switch (property.kind) {
+            case STRING:
+                out.writeString((String) field.get(target));
+                return;
+            case INT:
+                out.writeVarLong(field.getInt(target));
+                return;
+            case LONG:
+                out.writeVarLong(field.getLong(target));
+                return;
+            case BOOLEAN:
+                out.write(field.getBoolean(target) ? 1 : 0);
+                return;
+            case DOUBLE:
+                out.writeLong(Double.doubleToRawLongBits(field.getDouble(target)));
+                return;
+            default:
+        }
+        Object value = field.get(target);
+        out.write(value == null ? 0 : 1);
+        if (value == null) {
+            return;
+        }
+        switch (property.kind) {
+            case NULLABLE_INT:
+                out.writeVarLong((Integer) value);
+                break;
+            case NULLABLE_LONG:
+                out.writeVarLong((Long) value);
+                break;
+            case NULLABLE_BOOLEAN:
+                out.write((Boolean) value ? 1 : 0);
+                break;
+            case NULLABLE_DOUBLE:
+                out.writeLong(Double.doubleToRawLongBits((Double) value));
+                break;
+            case DATE:
+                out.writeVarLong(((Date) value).getTime());
+                break;
+            default:
+                out.writeByteArray(JSON.toJSONBytes(value));
+        }
+    }
+
+    private static void read(Property property, Object target, Input in) throws IOException, IllegalAccessException {
+        Field field = property.field;
+        switch (property.kind) {
+            case STRING:
+                field.set(target, in.readString());
+                return;
+            case INT:
+                field.setInt(target, (int) in.readVarLong());
+                return;
+            case LONG:
+                field.setLong(target, in.readVarLong());
+                return;
+            case BOOLEAN:
+                field.setBoolean(target, in.read() != 0);
+                return;
+            case DOUBLE:
+                field.setDouble(target, Double.longBitsToDouble(in.readLong()));
+                return;
+            default:
+        }
+        if (in.read() == 0) {
+            return;
+        }
+        switch (property.kind) {
+            case NULLABLE_INT:
+                field.set(target, (int) in.readVarLong());
+                break;
+            case NULLABLE_LONG:
+                field.set(target, in.readVarLong());
+                break;
+            case NULLABLE_BOOLEAN:
+                field.set(target, in.read() != 0);
+                break;
+            case NULLABLE_DOUBLE:
+                field.set(target, Double.longBitsToDouble(in.readLong()));
+                break;
+            case DATE:
+                field.set(target, new Date(in.readVarLong()));
+                break;
+            default:
+                int length = in.readVarInt();
+                field.set(target, JSON.parseObject(in.data, in.skip(length), length, StandardCharsets.UTF_8, field.getGenericType()));
+        }
+    }
+
+    /**
+     * 跳过类型中没有或类型不一致的字段值
+     */
+    private static void skip(int kind, Input in) throws IOException {
+        switch (kind) {
+            case STRING:
+                int length = in.readVarInt();
+                if (length > 0) {
+                    in.skip(length - 1);
+                }
+                return;
+            case INT:
+            case LONG:
+                in.readVarLong();
+                return;
+            case BOOLEAN:
+                in.read();
+                return;
+            case DOUBLE:
+                in.skip(8);
+                return;
+            case NULLABLE_INT:
+            case NULLABLE_LONG:
+            case NULLABLE_BOOLEAN:
+            case NULLABLE_DOUBLE:
+            case DATE:
+            case OBJECT:
+                break;
+            default:
+                throw new IOException("未知的字段类型: " + kind);
+        }
+        if (in.read() == 0) {
+            return;
+        }
+        switch (kind) {
+            case NULLABLE_BOOLEAN:
+                in.read();
+                break;
+            case NULLABLE_DOUBLE:
+                in.skip(8);
+                break;
+            case OBJECT:
+                in.skip(in.readVarInt());
+                break;
+            default:
+                in.readVarLong();
+        }
+    }
+
+    /**
+     * 类型的字段与无参构造方法
+     */
+    private static final class Schema {
+        final Constructor<?> constructor;
+        final Property[] properties;
+
+        /**
+         * 序号 -> 字段
+         */
+        final Property[] ordinals;
+
+        /**
+         * 按序号查找
+         *
+         * @param ordinal 序号
+         * @return 字段，类型中没有时为null
+         */
+        Property find(int ordinal) {
+            return ordinal < ordinals.length ? ordinals[ordinal] : null;
+        }
+
+        Schema(Class<?> type) {
+            if (type.isPrimitive() || type.isArray() || type.isInterface() || type.getName().startsWith("java.")) {
+                throw new IllegalArgumentException("二进制编码只支持JavaBean: " + type.getName());
+            }
+            try {
+                constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("二进制编码需要无参构造方法: " + type.getName());
+            }
+            List<Property> list = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                        DataField annotation = field.getAnnotation(DataField.class);
+                        if (annotation == null) {
+                            throw new IllegalArgumentException("二进制编码的字段需用@DataField标注序号: " + c.getName() + "." + field.getName());
+                        }
+                        if (annotation.value() < 1 || annotation.value() > DataField.MAX_ORDINAL) {
+                            throw new IllegalArgumentException("字段序号须在1至" + DataField.MAX_ORDINAL + "之间: " + c.getName() + "." + field.getName());
+                        }
+                        field.setAccessible(true);
+                        list.add(new Property(field, annotation.value()));
+                    }
+                }
+            }
+            list.sort(Comparator.comparingInt(p -> p.ordinal));
+            properties = list.toArray(new Property[0]);
+            ordinals = new Property[properties.length == 0 ? 0 : properties[properties.length - 1].ordinal + 1];
+            for (Property property : properties) {
+                if (ordinals[property.ordinal] != null) {
+                    throw new IllegalArgumentException("字段序号重复: " + type.getName() + "." + property.field.getName());
+                }
+                ordinals[property.ordinal] = property;
+            }
+        }
+    }
+
+    private static final class Property {
+        final Field field;
+        final int ordinal;
+        final int kind;
+
+        Property(Field field, int ordinal) {
+            this.field = field;
+            this.ordinal = ordinal;
+            this.kind = kind(field.getType());
+        }
+
+        private static int kind(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == int.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == double.class) {
+                return DOUBLE;
+            } else if (type == Integer.class) {
+                return NULLABLE_INT;
+            } else if (type == Long.class) {
+                return NULLABLE_LONG;
+            } else if (type == Boolean.class) {
+                return NULLABLE_BOOLEAN;
+            } else if (type == Double.class) {
+                return NULLABLE_DOUBLE;
+            } else if (type == Date.class) {
+                return DATE;
+            }
+            return OBJECT;
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(64);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        /**
+         * zigzag编码，绝对值小的负数也只占少量字节
+         */
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            write((int) zigzag);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeByteArray(byte[] bytes) {
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Input {
+        final byte[] data;
+        int position;
+        final int end;
+
+        Input(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        int read() throws EOFException {
+            if (position >= end) {
+                throw new EOFException("二进制数据不完整");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        /**
+         * 跳过若干字节
+         *
+         * @return 跳过前的位置
+         */
+        int skip(int length) throws EOFException {
+            if (length < 0 || length > end - position) {
+                throw new EOFException("二进制数据不完整");
+            }
+            int start = position;
+            position += length;
+            return start;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("varint过长");
+        }
+
+        long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IOException("varint过长");
+        }
+
+        long readLong() throws EOFException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            return new String(data, skip(length - 1), length - 1, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.IOUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 按月压缩归档的冷数据<br/>
+ * 模块文件夹下每月一个{@code <yyyyMM>.zip}，条目名为{@code <yyyyMMdd>/<文件名>}，由{@link DataArchiver}生成<br/>
+ * 读取时按需解压单个条目，最近打开的归档保留在缓存中，归档文件被替换后自动重新打开
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据归档
+ */
+public class DataArchive {
+
+    /**
+     * 归档文件后缀
+     */
+    public static final String ARCHIVE_SUFFIX = ".zip";
+
+    private static final int MONTH_LENGTH = 6;
+
+    private static final int CACHE_SIZE = 8;
+
+    /**
+     * 最近打开的归档，被挤出时关闭
+     */
+    private static final Map<String, Opened> ARCHIVES = new LinkedHashMap<String, Opened>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Opened> eldest) {
+            if (size() > CACHE_SIZE) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final File archiveFile;
+
+    /**
+     * 天文件夹名加'/'，即该天条目名的前缀
+     */
+    private final String prefix;
+
+    private DataArchive(File archiveFile, String dayName) {
+        this.archiveFile = archiveFile;
+        this.prefix = dayName + '/';
+    }
+
+    /**
+     * 获取天文件夹对应的归档，归档文件可以不存在
+     *
+     * @param dir 天文件夹
+     * @return 归档
+     */
+    public static DataArchive of(File dir) {
+        return new DataArchive(archiveFile(dir), dir.getName());
+    }
+
+    /**
+     * 天文件夹所在月份的归档文件
+     *
+     * @param dir 天文件夹
+     * @return 归档文件
+     */
+    public static File archiveFile(File dir) {
+        File absolute = dir.getAbsoluteFile();
+        String month = absolute.getName().substring(0, Math.min(MONTH_LENGTH, absolute.getName().length()));
+        return new File(absolute.getParentFile(), month + ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * 是否为归档文件名（{@code yyyyMM.zip}）
+     *
+     * @param name 文件名
+     * @return 是否为归档文件名
+     */
+    public static boolean isArchiveName(String name) {
+        return name.length() == MONTH_LENGTH + ARCHIVE_SUFFIX.length()
+                && name.endsWith(ARCHIVE_SUFFIX)
+                && DateUtil.parseEpochDay(name.substring(0, MONTH_LENGTH) + "01") != DateUtil.INVALID_EPOCH_DAY;
+    }
+
+    /**
+     * 获取归档中有数据的天
+     *
+     * @param archiveFile 归档文件
+     * @return epoch-day，升序
+     * @throws IOException 异常
+     */
+    public static List<Long> days(File archiveFile) throws IOException {
+        List<Long> days = new ArrayList<>();
+        Opened opened = open(archiveFile);
+        if (opened == null) {
+            return days;
+        }
+        String lastDay = null;
+        for (String name : opened.entries.keySet()) {
+            int slash = name.indexOf('/');
+            String day = slash < 0 ? name : name.substring(0, slash);
+            if (!day.equals(lastDay)) {
+                lastDay = day;
+                long epochDay = DateUtil.parseEpochDay(day);
+                if (epochDay != DateUtil.INVALID_EPOCH_DAY) {
+                    days.add(epochDay);
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * 关闭已打开的归档，替换归档文件前调用
+     *
+     * @param archiveFile 归档文件
+     */
+    static void close(File archiveFile) {
+        Opened opened;
+        synchronized (ARCHIVES) {
+            opened = ARCHIVES.remove(archiveFile.getAbsolutePath());
+        }
+        if (opened != null) {
+            opened.close();
+        }
+    }
+
+    public boolean exists() {
+        return archiveFile.isFile();
+    }
+
+    public File getArchiveFile() {
+        return archiveFile;
+    }
+
+    /**
+     * 获取该天归档的所有记录名，按名称排序
+     *
+     * @return 记录名
+     * @throws IOException 异常
+     */
+    public List<String> names() throws IOException {
+        Opened opened = open(archiveFile);
+        if (opened == null) {
+            return new ArrayList<>();
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : day(opened).keySet()) {
+            names.add(name.substring(prefix.length()));
+        }
+        return names;
+    }
+
+    /**
+     * 按名称顺序访问该天归档的指定记录，逐条解压
+     *
+     * @param names   记录名，为null时访问全部记录；不存在的记录忽略
+     * @param visitor 访问器
+     * @throws IOException 异常
+     */
+    public void read(Collection<String> names, DataVisitor visitor) throws IOException {
+        while (true) {
+            Opened opened = open(archiveFile);
+            if (opened == null) {
+                return;
+            }
+            synchronized (opened) {
+                // 读取前被挤出缓存或被替换而关闭，重新打开
+                if (opened.closed) {
+                    continue;
+                }
+                for (Map.Entry<String, ZipEntry> e : day(opened).entrySet()) {
+                    String name = e.getKey().substring(prefix.length());
+                    if (names == null || names.contains(name)) {
+                        visit(opened.zip, e.getValue(), name, visitor);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private SortedMap<String, ZipEntry> day(Opened opened) {
+        // '0'是'/'的下一个字符
+        return opened.entries.subMap(prefix, prefix.substring(0, prefix.length() - 1) + '0');
+    }
+
+    private static void visit(ZipFile zip, ZipEntry entry, String name, DataVisitor visitor) throws IOException {
+        long size = entry.getSize();
+        if (size < 0) {
+            throw new IOException("归档条目缺少长度：" + entry.getName());
+        }
+        byte[] buffer = DataReadBuffer.get(size);
+        InputStream in = zip.getInputStream(entry);
+        try {
+            if (IOUtil.read(in, buffer, 0, (int) size) != size) {
+                throw new IOException("归档条目不完整：" + entry.getName());
+            }
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+        visitor.visit(name, buffer, 0, (int) size);
+    }
+
+    /**
+     * 从缓存获取已打开的归档，归档文件变化时重新打开
+     *
+     * @return 已打开的归档，归档文件不存在时为null
+     */
+    private static Opened open(File archiveFile) throws IOException {
+        String key = archiveFile.getAbsolutePath();
+        Opened opened;
+        Opened stale;
+        synchronized (ARCHIVES) {
+            opened = ARCHIVES.get(key);
+            long stamp = archiveFile.lastModified() * 31 + archiveFile.length();
+            if (opened != null && opened.stamp == stamp) {
+                return opened;
+            }
+            stale = ARCHIVES.remove(key);
+            opened = stamp == 0L ? null : new Opened(new ZipFile(archiveFile), stamp);
+            if (opened != null) {
+                ARCHIVES.put(key, opened);
+            }
+        }
+        if (stale != null) {
+            stale.close();
+        }
+        return opened;
+    }
+
+    /**
+     * 已打开的归档及按名称排序的条目
+     */
+    private static final class Opened {
+        final ZipFile zip;
+        final long stamp;
+        final TreeMap<String, ZipEntry> entries = new TreeMap<>();
+        boolean closed;
+
+        Opened(ZipFile zip, long stamp) {
+            this.zip = zip;
+            this.stamp = stamp;
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), entry);
+                }
+            }
+        }
+
+        /**
+         * 等待正在进行的读取结束后关闭
+         */
+        synchronized void close() {
+            closed = true;
+            IOUtil.closeQuietly(zip);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 冷数据归档：将早于保留天数的天文件夹（包括其{@link DataSegment}）按月压缩为{@link DataArchive}<br/>
+ * 先写临时文件落盘后原子替换归档，再持有{@link DataWriter}的写入锁删除读取后未变化的数据；
+ * 中途失败时归档与原数据内容一致，读取时以原数据为准<br/>
+ * 用法：{@code java com.xmingl.base.data.DataArchiver [保留最近天数，默认30]}，服务运行时拒绝运行（{@link DataDirectoryLock}）
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据归档
+ */
+public class DataArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataArchiver.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static ScheduledExecutorService scheduler;
+
+    private static final Set<String> SCHEDULED = new HashSet<>();
+
+    public static void main(String[] args) throws IOException {
+        int keepDays = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        File root = new File(DataUtil.BASE_FILE_PATH);
+        DataDirectoryLock.acquire(root);
+        int archived = archive(root, keepDays);
+        logger.info("archive finish, archived days: {}", archived);
+    }
+
+    /**
+     * 在后台线程中每天归档一次模块的冷数据，同一模块只调度一次
+     *
+     * @param moduleDir 模块文件夹
+     * @param keepDays  保留最近几天不归档（包含今天）
+     */
+    public static synchronized void schedule(File moduleDir, int keepDays) {
+        if (!SCHEDULED.add(moduleDir.getAbsolutePath())) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "data-archiver");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archive(moduleDir, keepDays);
+            } catch (IOException | RuntimeException e) {
+                logger.error("archive: {} , reason: {}", moduleDir, e.getMessage());
+            }
+        }, 1, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    /**
+     * 归档文件夹下所有早于保留天数的天文件夹
+     *
+     * @param root     数据根目录或模块文件夹
+     * @param keepDays 保留最近几天不归档（包含今天）
+     * @return 归档的天数
+     * @throws IOException 异常
+     */
+    public static int archive(File root, int keepDays) throws IOException {
+        long lastDay = DateUtil.getEpochDay(new Date()) - keepDays;
+        return archive(root, lastDay, 0);
+    }
+
+    private static int archive(File dir, long lastDay, int archived) throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            return archived;
+        }
+        Arrays.sort(names);
+        // 月份 -> 需要归档的天
+        Map<String, Set<Long>> months = new TreeMap<>();
+        for (String name : names) {
+            File child = new File(dir, name);
+            String dayName = name.endsWith(DataSegment.SEGMENT_SUFFIX)
+                    ? name.substring(0, name.length() - DataSegment.SEGMENT_SUFFIX.length())
+                    : name;
+            long epochDay = DateUtil.parseEpochDay(dayName);
+            if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+                if (child.isDirectory()) {
+                    archived = archive(child, lastDay, archived);
+                }
+            } else if (epochDay <= lastDay) {
+                months.computeIfAbsent(dayName.substring(0, 6), k -> new TreeSet<>()).add(epochDay);
+            }
+        }
+        for (Set<Long> days : months.values()) {
+            archived += pack(dir, days);
+        }
+        return archived;
+    }
+
+    /**
+     * 将同一月份的若干天并入该月的归档，并删除已归档的天文件夹与段
+     *
+     * @param moduleDir 模块文件夹
+     * @param days      同一月份的epoch-day
+     * @return 归档的天数
+     * @throws IOException 异常
+     */
+    public static int pack(File moduleDir, Set<Long> days) throws IOException {
+        if (days.isEmpty()) {
+            return 0;
+        }
+        File firstDir = new File(moduleDir, DateUtil.formatEpochDay(days.iterator().next()));
+        File archiveFile = DataArchive.archiveFile(firstDir);
+        File tmp = new File(archiveFile.getPath() + TMP_SUFFIX);
+        Set<String> dayNames = new HashSet<>();
+        for (long epochDay : days) {
+            dayNames.add(DateUtil.formatEpochDay(epochDay));
+        }
+        // 每天已读取的文件与段长度，落盘后只删除这些数据
+        Map<File, List<PackedFile>> packedFiles = new LinkedHashMap<>();
+        Map<File, Long> packedSegments = new HashMap<>();
+        FileOutputStream fos = FileUtil.openOutputStream(tmp);
+        ZipOutputStream zip = new ZipOutputStream(fos);
+        try {
+            if (archiveFile.isFile()) {
+                copyOtherDays(archiveFile, dayNames, zip);
+            }
+            for (long epochDay : days) {
+                File dir = new File(moduleDir, DateUtil.formatEpochDay(epochDay));
+                DataSegment segment = DataSegment.of(dir);
+                packedSegments.put(dir, segment.getSegmentFile().length());
+                packedFiles.put(dir, writeDay(dir, segment, zip));
+            }
+            zip.finish();
+            fos.getFD().sync();
+        } finally {
+            IOUtil.closeQuietly(zip);
+        }
+        DataArchive.close(archiveFile);
+        Files.move(tmp.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // 检查与删除期间不能有追加，否则检查之后追加的记录会随段一起删除
+        DataWriter.exclusive(() -> {
+            for (Map.Entry<File, List<PackedFile>> e : packedFiles.entrySet()) {
+                File dir = e.getKey();
+                for (PackedFile packed : e.getValue()) {
+                    if (packed.isUnchanged()) {
+                        FileUtil.forceDelete(packed.file);
+                    } else {
+                        logger.warn("archive: {} , reason: {}", packed.file, "归档期间文件有修改，保留文件");
+                    }
+                }
+                DataSegment segment = DataSegment.of(dir);
+                if (segment.getSegmentFile().length() == packedSegments.get(dir)) {
+                    segment.delete();
+                } else {
+                    logger.warn("archive: {} , reason: {}", segment.getSegmentFile(), "归档期间段文件有追加，保留段文件");
+                }
+                String[] rest = dir.list();
+                if (rest != null && rest.length == 0) {
+                    FileUtil.forceDelete(dir);
+                }
+            }
+        });
+        logger.info("archive: {} , days: {}", archiveFile, days.size());
+        return days.size();
+    }
+
+    /**
+     * 复制归档中不需要重新写入的天
+     */
+    private static void copyOtherDays(File archiveFile, Set<String> dayNames, ZipOutputStream zip) throws IOException {
+        for (long epochDay : DataArchive.days(archiveFile)) {
+            String dayName = DateUtil.formatEpochDay(epochDay);
+            if (!dayNames.contains(dayName)) {
+                DataArchive.of(new File(archiveFile.getParentFile(), dayName)).read(null, (name, bytes, offset, length) ->
+                        putEntry(zip, dayName + '/' + name, bytes, offset, length));
+            }
+        }
+    }
+
+    /**
+     * 写入一天的数据：归档中已有的、段中的、文件夹中的记录合并，同名以文件为准，段中已删除的记录不再写入
+     *
+     * @return 已写入的文件
+     */
+    private static List<PackedFile> writeDay(File dir, DataSegment segment, ZipOutputStream zip) throws IOException {
+        TreeMap<String, byte[]> records = new TreeMap<>();
+        DataVisitor collect = (name, bytes, offset, length) -> records.put(name, Arrays.copyOfRange(bytes, offset, offset + length));
+        DataArchive archive = DataArchive.of(dir);
+        if (archive.exists()) {
+            archive.read(null, collect);
+        }
+        if (segment.exists()) {
+            records.keySet().removeAll(segment.deletedNames());
+            segment.read(collect);
+        }
+        List<PackedFile> files = new ArrayList<>();
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File file : children) {
+                if (file.isFile()) {
+                    // 先记录修改时间与长度再读取，删除前据此判断读取之后是否被修改
+                    PackedFile packed = new PackedFile(file);
+                    records.put(file.getName(), FileUtil.readFileToByteArray(file));
+                    files.add(packed);
+                }
+            }
+        }
+        for (Map.Entry<String, byte[]> e : records.entrySet()) {
+            putEntry(zip, dir.getName() + '/' + e.getKey(), e.getValue(), 0, e.getValue().length);
+        }
+        return files;
+    }
+
+    /**
+     * 已归档的散文件及读取前的修改时间与长度
+     */
+    private static final class PackedFile {
+        final File file;
+        final long lastModified;
+        final long length;
+
+        PackedFile(File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        boolean isUnchanged() {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] data, int offset, int length) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(data, offset, length);
+        zip.closeEntry();
+    }
+}
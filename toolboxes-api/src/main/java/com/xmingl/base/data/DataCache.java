@@ -0,0 +1,193 @@
+package com.xmingl.base.data;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按权重（估算字节数）限制大小的LRU数据缓存<br/>
+ * 加载期间同一个键失效（或清空缓存）时，加载结果不写入缓存，避免缓存旧数据；其他键失效不影响
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据缓存
+ */
+public class DataCache<K, V> {
+
+    /**
+     * 加载器
+     */
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    /**
+     * 权重计算
+     */
+    public interface Weigher<V> {
+        long weigh(V value);
+    }
+
+    private final long maxWeight;
+
+    private final Weigher<V> weigher;
+
+    private final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+
+    /**
+     * 每次失效递增，加载开始时记录
+     */
+    private long version;
+
+    /**
+     * 最近一次清空缓存时的版本
+     */
+    private long clearedVersion;
+
+    /**
+     * 正在加载的键 -> 加载数
+     */
+    private final Map<K, Integer> loading = new HashMap<>();
+
+    /**
+     * 正在加载的键 -> 最近一次失效时的版本，晚于加载开始版本则丢弃加载结果；加载全部结束时移除
+     */
+    private final Map<K, Long> invalidated = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxWeight 最大权重
+     * @param weigher   权重计算
+     */
+    public DataCache(long maxWeight, Weigher<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 获取缓存，不存在时加载
+     *
+     * @param key    键
+     * @param loader 加载器
+     * @return 值
+     * @throws IOException 加载异常
+     */
+    public V get(K key, Loader<V> loader) throws IOException {
+        long loadVersion;
+        synchronized (this) {
+            Node<V> node = map.get(key);
+            if (node != null) {
+                hits.increment();
+                return node.value;
+            }
+            misses.increment();
+            loadVersion = version;
+            loading.merge(key, 1, Integer::sum);
+        }
+        V value;
+        long valueWeight;
+        try {
+            value = loader.load();
+            valueWeight = weigher.weigh(value);
+        } catch (IOException | RuntimeException | Error e) {
+            synchronized (this) {
+                loaded(key);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            boolean stale = clearedVersion > loadVersion || invalidated.getOrDefault(key, loadVersion) > loadVersion;
+            loaded(key);
+            if (!stale && valueWeight <= maxWeight) {
+                Node<V> old = map.put(key, new Node<>(value, valueWeight));
+                if (old != null) {
+                    weight -= old.weight;
+                }
+                weight += valueWeight;
+                evict();
+            }
+        }
+        return value;
+    }
+
+    private void loaded(K key) {
+        if (loading.merge(key, -1, Integer::sum) == 0) {
+            loading.remove(key);
+            invalidated.remove(key);
+        }
+    }
+
+    /**
+     * 使某个键失效
+     *
+     * @param key 键
+     */
+    public synchronized void invalidate(K key) {
+        version++;
+        if (loading.containsKey(key)) {
+            invalidated.put(key, version);
+        }
+        Node<V> old = map.remove(key);
+        if (old != null) {
+            weight -= old.weight;
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        clearedVersion = version;
+        invalidations.add(map.size());
+        map.clear();
+        weight = 0;
+    }
+
+    private void evict() {
+        Iterator<Node<V>> it = map.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            weight -= it.next().weight;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return 命中、未命中、淘汰、失效次数及当前大小
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        synchronized (this) {
+            stats.put("size", (long) map.size());
+            stats.put("weight", weight);
+        }
+        stats.put("maxWeight", maxWeight);
+        return stats;
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final long weight;
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
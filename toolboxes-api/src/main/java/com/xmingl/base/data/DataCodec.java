@@ -0,0 +1,45 @@
+package com.xmingl.base.data;
+
+import java.io.IOException;
+
+/**
+ * 数据编解码<br/>
+ * 每种编码有自己的首字节特征，读取时按首字节识别编码，同一天文件夹中可以混合存放不同编码的数据
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据编解码
+ * @see DataCodecs
+ */
+public interface DataCodec {
+
+    /**
+     * 编码
+     *
+     * @param value 数据
+     * @return 字节
+     * @throws IOException 异常
+     */
+    byte[] encode(Object value) throws IOException;
+
+    /**
+     * 解码
+     *
+     * @param data   数据所在数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @param clazz  类型
+     * @return 数据
+     * @throws IOException 异常
+     */
+    <T> T decode(byte[] data, int offset, int length, Class<T> clazz) throws IOException;
+
+    /**
+     * 是否为本编码的数据
+     *
+     * @param data   数据所在数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 是否为本编码的数据
+     */
+    boolean accepts(byte[] data, int offset, int length);
+}
@@ -0,0 +1,32 @@
+package com.xmingl.base.data;
+
+/**
+ * 内置的数据编码，读取时按首字节识别编码
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据编码
+ */
+public class DataCodecs {
+
+    /**
+     * JSON编码，默认编码
+     */
+    public static final DataCodec JSON = new JsonDataCodec();
+
+    /**
+     * 紧凑的二进制编码
+     */
+    public static final DataCodec BINARY = new BinaryDataCodec();
+
+    /**
+     * 识别数据的编码，无法识别时为JSON
+     *
+     * @param data   数据所在数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 编码
+     */
+    public static DataCodec detect(byte[] data, int offset, int length) {
+        return BINARY.accepts(data, offset, length) ? BINARY : JSON;
+    }
+}
@@ -0,0 +1,545 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模块按天（epoch-day）的数据量索引<br/>
+ * 索引保存在模块文件夹下的{@link #INDEX_FILE_NAME}中，每一天记录：数据量、天文件夹及其{@link DataSegment}、{@link DataArchive}的修改时间<br/>
+ * 查询时只对天文件夹、段文件和归档文件做stat：修改时间未变化直接返回索引值，变化则重新统计该天；
+ * 索引文件丢失或损坏时从磁盘重建；重新统计后延迟{@link #SAVE_DELAY_MILLIS}合并保存，不在查询中写文件，
+ * 未保存的变化在下次启动时按修改时间重新统计；查询没有数据的天不会加入索引<br/>
+ * 每一天的数据量变化时同步更新所在年的汇总：每年一个int数组，依次为每天、每月的数据量和全年合计
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据量索引
+ */
+public class DataCountIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataCountIndex.class);
+
+    /**
+     * 索引文件名
+     */
+    public static final String INDEX_FILE_NAME = "count.idx";
+
+    private static final int MAGIC = 0x58434E54;
+
+    private static final int VERSION = 2;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * 年汇总数组中每月数据量的起始下标，之前为每天（最多366天）
+     */
+    private static final int ROLLUP_MONTHS = 366;
+
+    /**
+     * 年汇总数组中全年合计的下标
+     */
+    private static final int ROLLUP_TOTAL = ROLLUP_MONTHS + 12;
+
+    /**
+     * 数据量变化后等待此时间再保存
+     */
+    private static final long SAVE_DELAY_MILLIS = 5 * 1000;
+
+    private static final Map<String, DataCountIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "count-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File moduleDir;
+
+    private final File indexFile;
+
+    /**
+     * 开放寻址表：epoch-day、数据量、修改时间、天文件夹、段文件、归档文件
+     */
+    private long[] days;
+    private int[] counts;
+    private long[] stamps;
+    private File[] dirs;
+    private File[] segments;
+    private File[] archives;
+    private int size;
+
+    /**
+     * 年 -> 汇总
+     */
+    private final Map<Integer, int[]> rollups = new HashMap<>();
+
+    private ScheduledFuture<?> saveTask;
+
+    private DataCountIndex(File moduleDir) {
+        this.moduleDir = moduleDir;
+        this.indexFile = new File(moduleDir, INDEX_FILE_NAME);
+        allocate(64);
+    }
+
+    /**
+     * 获取模块的数据量索引，首次获取时从索引文件加载，加载失败则重建
+     *
+     * @param moduleDir 模块文件夹
+     * @return 数据量索引
+     */
+    public static DataCountIndex of(File moduleDir) {
+        return INDEXES.computeIfAbsent(moduleDir.getAbsolutePath(), path -> {
+            DataCountIndex index = new DataCountIndex(moduleDir);
+            index.load();
+            return index;
+        });
+    }
+
+    /**
+     * 获取某一天的数据量
+     *
+     * @param epochDay epoch-day
+     * @return 数据量
+     */
+    public synchronized int count(long epochDay) {
+        int slot = existingSlot(epochDay);
+        if (slot < 0) {
+            return 0;
+        }
+        if (refresh(slot)) {
+            scheduleSave();
+        }
+        return counts[slot];
+    }
+
+    /**
+     * 获取某一天数据的修改标记：天文件夹、段文件与归档文件修改时间的组合，数据变化后标记随之变化
+     *
+     * @param epochDay epoch-day
+     * @return 修改标记，没有数据时为0
+     */
+    public synchronized long modified(long epochDay) {
+        int slot = find(epochDay);
+        if (slot >= 0) {
+            return stamp(slot);
+        }
+        File dir = new File(moduleDir, DateUtil.formatEpochDay(epochDay));
+        return stamp(dir, DataSegment.segmentFile(dir), DataArchive.archiveFile(dir));
+    }
+
+    /**
+     * 获取一段日期内每天的数据量<br/>
+     * 只列一次模块文件夹，按天有序遍历存在的天文件夹、段文件和归档中的天，数据量为0的天不返回
+     *
+     * @param fromDay 开始epoch-day（包含）
+     * @param toDay   结束epoch-day（包含）
+     * @return epoch-day -> 数据量
+     */
+    public synchronized Map<Long, Integer> counts(long fromDay, long toDay) {
+        Map<Long, Integer> result = new TreeMap<>();
+        if (fromDay > toDay) {
+            return result;
+        }
+        boolean changed = false;
+        for (long epochDay : listDays(fromDay, toDay)) {
+            int slot = slot(epochDay);
+            changed |= refresh(slot);
+            if (counts[slot] > 0) {
+                result.put(epochDay, counts[slot]);
+            }
+        }
+        if (changed) {
+            scheduleSave();
+        }
+        return result;
+    }
+
+    /**
+     * 获取一年的数据量汇总，先重新统计该年中有变化的天
+     *
+     * @param year 年
+     * @return 每天、每月的数据量及全年合计
+     */
+    public synchronized DataYearCounts year(int year) {
+        long fromDay = LocalDate.of(year, 1, 1).toEpochDay();
+        long toDay = LocalDate.of(year, 12, 31).toEpochDay();
+        boolean changed = false;
+        for (long epochDay : listDays(fromDay, toDay)) {
+            changed |= refresh(slot(epochDay));
+        }
+        // 已删除的天不再出现在文件夹中，也要重新统计
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] != EMPTY && days[i] >= fromDay && days[i] <= toDay) {
+                changed |= refresh(i);
+            }
+        }
+        if (changed) {
+            scheduleSave();
+        }
+        int[] rollup = rollups.get(year);
+        if (rollup == null) {
+            rollup = new int[ROLLUP_TOTAL + 1];
+        }
+        return new DataYearCounts(year,
+                Arrays.copyOf(rollup, Year.of(year).length()),
+                Arrays.copyOfRange(rollup, ROLLUP_MONTHS, ROLLUP_MONTHS + 12),
+                rollup[ROLLUP_TOTAL]);
+    }
+
+    /**
+     * 某一天的数据被写入或删除后重新统计
+     *
+     * @param epochDay epoch-day
+     */
+    public synchronized void update(long epochDay) {
+        int slot = existingSlot(epochDay);
+        if (slot >= 0 && refresh(slot)) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * 丢弃索引并从磁盘重建
+     */
+    public synchronized void rebuild() {
+        allocate(64);
+        rollups.clear();
+        for (long epochDay : listDays(Long.MIN_VALUE + 1, Long.MAX_VALUE)) {
+            refresh(insert(epochDay, 0, 0L));
+        }
+        save();
+        logger.info("rebuild count index: {} , days: {}", moduleDir, size);
+    }
+
+    /**
+     * 列出模块文件夹下一段日期内有数据的天：天文件夹、段文件及归档中的天，只打开月份有交集的归档
+     */
+    private TreeSet<Long> listDays(long fromDay, long toDay) {
+        TreeSet<Long> result = new TreeSet<>();
+        String[] names = moduleDir.list();
+        if (names == null) {
+            return result;
+        }
+        for (String name : names) {
+            if (DataArchive.isArchiveName(name)) {
+                long monthDay = DateUtil.parseEpochDay(name.substring(0, 6) + "01");
+                if (monthDay > toDay || monthDay + 31 <= fromDay) {
+                    continue;
+                }
+                File archiveFile = new File(moduleDir, name);
+                try {
+                    result.addAll(DataArchive.days(archiveFile));
+                } catch (IOException e) {
+                    logger.error("archive: {} , reason: {}", archiveFile, e.getMessage());
+                }
+                continue;
+            }
+            long epochDay = DateUtil.parseEpochDay(dayName(name));
+            if (epochDay != DateUtil.INVALID_EPOCH_DAY) {
+                result.add(epochDay);
+            }
+        }
+        return new TreeSet<>(result.subSet(fromDay, true, toDay, true));
+    }
+
+    private void load() {
+        if (!indexFile.isFile()) {
+            rebuild();
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(FileUtil.openInputStream(indexFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("索引文件格式错误");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                long epochDay = in.readLong();
+                int count = in.readInt();
+                setCount(insert(epochDay, 0, in.readLong()), count);
+            }
+        } catch (IOException e) {
+            logger.error("count index: {} , reason: {}", indexFile, e.getMessage());
+            IOUtil.closeQuietly(in);
+            in = null;
+            rebuild();
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private void scheduleSave() {
+        if (saveTask == null || saveTask.isDone()) {
+            saveTask = SAVER.schedule(() -> {
+                synchronized (this) {
+                    save();
+                }
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换，避免写入中途崩溃导致索引损坏
+     */
+    private void save() {
+        File tmp = new File(moduleDir, INDEX_FILE_NAME + ".tmp");
+        DataOutputStream out = null;
+        try {
+            FileUtil.forceMkdir(moduleDir);
+            out = new DataOutputStream(new BufferedOutputStream(FileUtil.openOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int n = 0;
+            for (int i = 0; i < days.length; i++) {
+                if (days[i] != EMPTY && stamps[i] != 0L) {
+                    n++;
+                }
+            }
+            out.writeInt(n);
+            for (int i = 0; i < days.length; i++) {
+                if (days[i] != EMPTY && stamps[i] != 0L) {
+                    out.writeLong(days[i]);
+                    out.writeInt(counts[i]);
+                    out.writeLong(stamps[i]);
+                }
+            }
+            out.close();
+            out = null;
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("count index: {} , reason: {}", indexFile, e.getMessage());
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    /**
+     * 获取或加入一天，用于{@link #listDays}列出的有数据的天
+     */
+    private int slot(long epochDay) {
+        int slot = find(epochDay);
+        return slot < 0 ? insert(epochDay, 0, 0L) : slot;
+    }
+
+    /**
+     * 获取一天，不在索引中时只有磁盘上有数据才加入
+     *
+     * @return 下标，没有数据时为-1
+     */
+    private int existingSlot(long epochDay) {
+        int slot = find(epochDay);
+        if (slot >= 0) {
+            return slot;
+        }
+        File dir = new File(moduleDir, DateUtil.formatEpochDay(epochDay));
+        if (stamp(dir, DataSegment.segmentFile(dir), DataArchive.archiveFile(dir)) == 0L) {
+            return -1;
+        }
+        return insert(epochDay, 0, 0L);
+    }
+
+    /**
+     * 天文件夹修改时间变化时重新统计
+     *
+     * @return 是否有变化
+     */
+    private boolean refresh(int slot) {
+        long stamp = stamp(slot);
+        if (stamp == stamps[slot]) {
+            return false;
+        }
+        setCount(slot, countDay(dirs[slot], segments[slot], archives[slot]));
+        stamps[slot] = stamp;
+        return true;
+    }
+
+    /**
+     * 设置数据量并按变化量更新年汇总
+     */
+    private void setCount(int slot, int count) {
+        int delta = count - counts[slot];
+        counts[slot] = count;
+        if (delta == 0) {
+            return;
+        }
+        LocalDate date = LocalDate.ofEpochDay(days[slot]);
+        int[] rollup = rollups.computeIfAbsent(date.getYear(), k -> new int[ROLLUP_TOTAL + 1]);
+        rollup[date.getDayOfYear() - 1] += delta;
+        rollup[ROLLUP_MONTHS + date.getMonthValue() - 1] += delta;
+        rollup[ROLLUP_TOTAL] += delta;
+    }
+
+    /**
+     * 天文件夹、段文件与归档文件修改时间的组合，都不存在时为0
+     */
+    private long stamp(int slot) {
+        return stamp(dirs[slot], segments[slot], archives[slot]);
+    }
+
+    private static long stamp(File dayDir, File segmentFile, File archiveFile) {
+        return (dayDir.lastModified() * 31 + segmentFile.lastModified()) * 31 + archiveFile.lastModified();
+    }
+
+    /**
+     * 去掉段文件后缀，得到天文件夹名
+     */
+    private static String dayName(String name) {
+        return name.endsWith(DataSegment.SEGMENT_SUFFIX)
+                ? name.substring(0, name.length() - DataSegment.SEGMENT_SUFFIX.length())
+                : name;
+    }
+
+    /**
+     * 统计一天的数据量：归档和段中的记录与文件夹中的文件合并，同名只算一次，段中已删除的归档记录不计
+     */
+    private static int countDay(File dayDir, File segmentFile, File archiveFile) {
+        if (!segmentFile.isFile() && !archiveFile.isFile()) {
+            return countFiles(dayDir);
+        }
+        Set<String> names = new HashSet<>();
+        try {
+            if (archiveFile.isFile()) {
+                names.addAll(DataArchive.of(dayDir).names());
+            }
+            if (segmentFile.isFile()) {
+                DataSegment segment = DataSegment.of(dayDir);
+                names.removeAll(segment.deletedNames());
+                names.addAll(segment.names());
+            }
+        } catch (IOException e) {
+            logger.error("day: {} , reason: {}", dayDir, e.getMessage());
+            return countFiles(dayDir);
+        }
+        names.addAll(listFiles(dayDir));
+        return names.size();
+    }
+
+    /**
+     * 统计天文件夹下的文件数量，不存在时为0
+     */
+    private static int countFiles(File dayDir) {
+        return listFiles(dayDir).size();
+    }
+
+    /**
+     * 列出天文件夹下的文件名（不含文件夹），不存在时为空<br/>
+     * 文件属性随列目录一起取得，不再逐个stat（Windows下列目录已带属性）
+     */
+    private static List<String> listFiles(File dayDir) {
+        Path start = dayDir.toPath();
+        List<String> names = new ArrayList<>();
+        try {
+            Files.walkFileTree(start, Collections.<FileVisitOption>emptySet(), 1, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isDirectory() && !file.equals(start)) {
+                        names.add(file.getFileName().toString());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.error("day: {} , reason: {}", dayDir, e.getMessage());
+        }
+        return names;
+    }
+
+    private void allocate(int capacity) {
+        days = new long[capacity];
+        Arrays.fill(days, EMPTY);
+        counts = new int[capacity];
+        stamps = new long[capacity];
+        dirs = new File[capacity];
+        segments = new File[capacity];
+        archives = new File[capacity];
+        size = 0;
+    }
+
+    private static int hash(long epochDay, int mask) {
+        long h = epochDay * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int find(long epochDay) {
+        int mask = days.length - 1;
+        for (int i = hash(epochDay, mask); ; i = (i + 1) & mask) {
+            if (days[i] == epochDay) {
+                return i;
+            }
+            if (days[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int insert(long epochDay, int count, long stamp) {
+        if ((size + 1) * 2 > days.length) {
+            long[] oldDays = days;
+            int[] oldCounts = counts;
+            long[] oldStamps = stamps;
+            File[] oldDirs = dirs;
+            File[] oldSegments = segments;
+            File[] oldArchives = archives;
+            allocate(oldDays.length * 2);
+            for (int i = 0; i < oldDays.length; i++) {
+                if (oldDays[i] != EMPTY) {
+                    put(oldDays[i], oldCounts[i], oldStamps[i], oldDirs[i], oldSegments[i], oldArchives[i]);
+                }
+            }
+        }
+        File dir = new File(moduleDir, DateUtil.formatEpochDay(epochDay));
+        return put(epochDay, count, stamp, dir, DataSegment.segmentFile(dir), DataArchive.archiveFile(dir));
+    }
+
+    private int put(long epochDay, int count, long stamp, File dir, File segment, File archive) {
+        int mask = days.length - 1;
+        int i = hash(epochDay, mask);
+        while (days[i] != EMPTY && days[i] != epochDay) {
+            i = (i + 1) & mask;
+        }
+        if (days[i] == EMPTY) {
+            size++;
+        }
+        days[i] = epochDay;
+        counts[i] = count;
+        stamps[i] = stamp;
+        dirs[i] = dir;
+        segments[i] = segment;
+        archives[i] = archive;
+        return i;
+    }
+}
@@ -0,0 +1,64 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 数据根目录的进程锁<br/>
+ * 服务与离线工具（{@link DataSegmentMigration}、{@link DataArchiver}）都会追加、替换或删除段文件，
+ * 同时运行会互相覆盖；获取锁的进程在存活期间独占根目录下{@link #LOCK_FILE_NAME}的文件锁，进程退出时由操作系统释放
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据目录锁
+ */
+public final class DataDirectoryLock {
+
+    /**
+     * 锁文件名
+     */
+    public static final String LOCK_FILE_NAME = ".lock";
+
+    /**
+     * 本进程已持有的锁：根目录 -> 文件锁，持有到进程退出
+     */
+    private static final Map<String, FileLock> LOCKS = new HashMap<>();
+
+    private DataDirectoryLock() {
+    }
+
+    /**
+     * 获取数据根目录的锁，本进程已持有时直接返回
+     *
+     * @param root 数据根目录
+     * @throws IOException 锁已被其他进程持有，或无法创建锁文件
+     */
+    public static synchronized void acquire(File root) throws IOException {
+        String key = root.getAbsolutePath();
+        if (LOCKS.containsKey(key)) {
+            return;
+        }
+        FileUtil.forceMkdir(root);
+        File lockFile = new File(root, LOCK_FILE_NAME);
+        FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } finally {
+            if (lock == null) {
+                IOUtil.closeQuietly(channel);
+            }
+        }
+        if (lock == null) {
+            throw new IOException("数据目录正被其他进程使用（服务或离线工具），请先停止：" + root);
+        }
+        LOCKS.put(key, lock);
+    }
+}
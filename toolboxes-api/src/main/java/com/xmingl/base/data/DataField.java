@@ -0,0 +1,28 @@
+package com.xmingl.base.data;
+
+import java.lang.annotation.*;
+
+/**
+ * {@link BinaryDataCodec}编码的字段序号<br/>
+ * 数据中只记录序号，字段改名不影响已有数据；删除字段后其序号不能再给其他字段使用
+ *
+ * @author XMINGL
+ * @version 0.0.1 字段序号
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DataField {
+
+    /**
+     * 最大的序号，序号越小编码越短，小于8时标记只占1字节
+     */
+    int MAX_ORDINAL = 1023;
+
+    /**
+     * 序号，同一类型（包括父类）中唯一，从1开始
+     *
+     * @return 序号
+     */
+    int value();
+}
@@ -0,0 +1,50 @@
+package com.xmingl.base.data;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据读取专用的有界线程池<br/>
+ * 队列满时由提交线程自己执行，读取请求不会被拒绝，只会退化为串行
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据读取线程池
+ */
+public class DataIOExecutor {
+
+    /**
+     * 线程数，SSD上多个并发读取可以提高队列深度
+     */
+    public static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final int QUEUE_SIZE = 256;
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            runnable -> {
+                Thread thread = new Thread(runnable, "data-io-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private DataIOExecutor() {
+    }
+
+    /**
+     * 提交读取任务
+     *
+     * @param task 任务
+     * @return Future
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return EXECUTOR.submit(task);
+    }
+}
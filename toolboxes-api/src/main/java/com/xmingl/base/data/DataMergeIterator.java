@@ -0,0 +1,137 @@
+package com.xmingl.base.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多个分区的惰性k路归并<br/>
+ * 每个分区有一个键（如epoch-day），分区内的数据有序；归并结果先按分区键、再按数据排序。
+ * 分区在轮到其键时才打开，未打开的分区排在同键已打开分区之前，因此只有与当前键相同的分区同时打开，
+ * 每个分区只持有自身的读取状态（如一页数据），不会把整个范围读入内存
+ *
+ * @author XMINGL
+ * @version 0.0.1 k路归并
+ */
+public class DataMergeIterator<T> implements Iterator<T> {
+
+    /**
+     * 分区
+     */
+    public interface Partition<T> {
+
+        /**
+         * 分区键
+         *
+         * @return 分区键
+         */
+        long key();
+
+        /**
+         * 打开分区
+         *
+         * @return 分区内有序的数据
+         * @throws IOException 异常
+         */
+        Iterator<T> open() throws IOException;
+    }
+
+    private final Comparator<? super T> comparator;
+
+    private final PriorityQueue<Run<T>> heap;
+
+    private long currentKey;
+
+    /**
+     * @param partitions 分区
+     * @param comparator 同键分区之间的数据排序，为null时同键分区按给出的顺序依次输出
+     */
+    public DataMergeIterator(List<? extends Partition<T>> partitions, Comparator<? super T> comparator) {
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.max(1, partitions.size()), this::compare);
+        int order = 0;
+        for (Partition<T> partition : partitions) {
+            heap.add(new Run<>(partition, order++));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        // 打开堆顶的未打开分区，直到堆顶是已打开分区的数据
+        while (!heap.isEmpty() && heap.peek().iterator == null) {
+            Run<T> run = heap.poll();
+            try {
+                run.iterator = run.partition.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (run.advance()) {
+                heap.add(run);
+            }
+        }
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Run<T> run = heap.poll();
+        T value = run.head;
+        currentKey = run.partition.key();
+        if (run.advance()) {
+            heap.add(run);
+        }
+        return value;
+    }
+
+    /**
+     * 上一次{@link #next()}返回的数据所在分区的键
+     *
+     * @return 分区键
+     */
+    public long currentKey() {
+        return currentKey;
+    }
+
+    private int compare(Run<T> a, Run<T> b) {
+        int c = Long.compare(a.partition.key(), b.partition.key());
+        if (c != 0) {
+            return c;
+        }
+        if (a.iterator == null || b.iterator == null) {
+            c = Boolean.compare(a.iterator != null, b.iterator != null);
+            return c != 0 ? c : Integer.compare(a.order, b.order);
+        }
+        if (comparator != null) {
+            c = comparator.compare(a.head, b.head);
+        }
+        return c != 0 ? c : Integer.compare(a.order, b.order);
+    }
+
+    private static final class Run<T> {
+        final Partition<T> partition;
+        final int order;
+        Iterator<T> iterator;
+        T head;
+
+        Run(Partition<T> partition, int order) {
+            this.partition = partition;
+            this.order = order;
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                head = null;
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.xmingl.base.data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据读取的耗时与计数，按模块统计<br/>
+ * 计数使用{@link LongAdder}，记录时无锁、不分配对象，可以在生产环境常开；
+ * 耗时直方图按微秒的2的幂分桶，读取快照时估算分位数。
+ * 模块由{@link #registerModule(String, String)}登记，按路径前缀匹配，未登记的路径归入{@link #OTHER}
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据读取指标
+ */
+public class DataMetrics {
+
+    /**
+     * 统计的操作
+     */
+    public enum Operation {
+        LOAD_LIST("loadDataList"),
+        LIST_NUM("listDataNum"),
+        LOAD_STRING("loadDataString");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    /**
+     * 直方图桶数：桶0为小于1微秒，桶i为[2^(i-1), 2^i)微秒，最后一个桶包含更长的耗时
+     */
+    private static final int BUCKETS = 26;
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private static final List<Module> MODULES = new CopyOnWriteArrayList<>();
+
+    /**
+     * 未登记模块的路径
+     */
+    public static final Module OTHER = new Module("other", null);
+
+    private DataMetrics() {
+    }
+
+    /**
+     * 登记模块，同名模块只登记一次
+     *
+     * @param name 模块名，作为指标名的一部分
+     * @param path 模块相对路径，以此为前缀的路径归入该模块
+     */
+    public static synchronized void registerModule(String name, String path) {
+        for (Module module : MODULES) {
+            if (module.name.equals(name)) {
+                return;
+            }
+        }
+        MODULES.add(new Module(name, path));
+    }
+
+    /**
+     * 按路径前缀查找模块，不分配对象
+     *
+     * @param filePath 相对路径
+     * @return 模块
+     */
+    public static Module module(String filePath) {
+        for (Module module : MODULES) {
+            if (filePath.startsWith(module.path)) {
+                return module;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * 指标快照
+     *
+     * @return 指标名 -> 值，指标名为data.模块.操作.(count|mean|max|p50|p95|p99)（耗时单位为毫秒）及data.模块.(bytesRead|filesOpened|parseTime)
+     */
+    public static Map<String, Number> snapshot() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        for (Module module : MODULES) {
+            module.snapshot(metrics);
+        }
+        OTHER.snapshot(metrics);
+        return metrics;
+    }
+
+    /**
+     * 模块的指标
+     */
+    public static final class Module {
+        private final String name;
+        private final String path;
+        private final Timer[] timers = new Timer[Operation.values().length];
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder filesOpened = new LongAdder();
+        private final LongAdder parseNanos = new LongAdder();
+
+        private Module(String name, String path) {
+            this.name = name;
+            this.path = path;
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = new Timer();
+            }
+        }
+
+        /**
+         * 记录一次操作的耗时
+         *
+         * @param operation 操作
+         * @param startNanos 开始时的{@link System#nanoTime()}
+         */
+        public void record(Operation operation, long startNanos) {
+            timers[operation.ordinal()].record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * 记录读取的数据
+         *
+         * @param files 打开的文件数
+         * @param bytes 读取的字节数
+         */
+        public void read(int files, long bytes) {
+            if (files > 0) {
+                filesOpened.add(files);
+            }
+            bytesRead.add(bytes);
+        }
+
+        /**
+         * 记录解码耗时
+         *
+         * @param nanos 纳秒
+         */
+        public void parsed(long nanos) {
+            parseNanos.add(nanos);
+        }
+
+        private void snapshot(Map<String, Number> metrics) {
+            String prefix = "data." + name + ".";
+            boolean used = false;
+            for (Operation operation : Operation.values()) {
+                used |= timers[operation.ordinal()].snapshot(prefix + operation.metricName + ".", metrics);
+            }
+            if (used || filesOpened.sum() > 0) {
+                metrics.put(prefix + "bytesRead", bytesRead.sum());
+                metrics.put(prefix + "filesOpened", filesOpened.sum());
+                metrics.put(prefix + "parseTime", parseNanos.sum() / 1e6);
+            }
+        }
+    }
+
+    private static final class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+        final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Timer() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            long micros = nanos / 1000;
+            int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, BUCKETS - 1)].increment();
+        }
+
+        /**
+         * @return 是否有记录
+         */
+        boolean snapshot(String prefix, Map<String, Number> metrics) {
+            long n = count.sum();
+            if (n == 0) {
+                return false;
+            }
+            metrics.put(prefix + "count", n);
+            metrics.put(prefix + "mean", totalNanos.sum() / 1e6 / n);
+            metrics.put(prefix + "max", maxNanos.get() / 1e6);
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            for (double percentile : PERCENTILES) {
+                long rank = (long) Math.ceil(percentile * total);
+                long seen = 0;
+                int i = 0;
+                while (i < BUCKETS - 1 && seen + counts[i] < rank) {
+                    seen += counts[i++];
+                }
+                // 取桶的上界，单位毫秒
+                metrics.put(prefix + "p" + Math.round(percentile * 100), (1L << i) / 1e3);
+            }
+            return true;
+        }
+    }
+}
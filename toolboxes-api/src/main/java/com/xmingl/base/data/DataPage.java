@@ -0,0 +1,36 @@
+package com.xmingl.base.data;
+
+import java.util.List;
+
+/**
+ * 按数据名称（文件名）分页的数据集合<br/>
+ * 游标为上一页最后一条数据的名称，下一页从其后开始，数据增删不影响已返回的页
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据分页
+ */
+public class DataPage<T> {
+
+    /**
+     * 本页数据
+     */
+    private final List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private final String nextCursor;
+
+    public DataPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
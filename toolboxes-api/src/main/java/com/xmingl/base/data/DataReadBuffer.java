@@ -0,0 +1,84 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOEvents;
+import com.xmingl.base.io.IOUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 每个线程复用的读取缓冲区，缓冲区中的数据只在当次访问期间有效
+ *
+ * @author XMINGL
+ * @version 0.0.1 读取缓冲区
+ */
+final class DataReadBuffer {
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    /**
+     * 超过该大小的缓冲区用完即弃，避免线程长期持有大数组
+     */
+    private static final int MAX_RETAINED_SIZE = (int) FileUtil.ONE_MB;
+
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_SIZE]);
+
+    private DataReadBuffer() {
+    }
+
+    /**
+     * 获取至少为指定大小的缓冲区
+     *
+     * @param size 大小
+     * @return 缓冲区
+     */
+    static byte[] get(long size) {
+        byte[] buffer = BUFFER.get();
+        if (size <= buffer.length) {
+            return buffer;
+        }
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("数据过大：" + size);
+        }
+        buffer = new byte[(int) Math.max(size, Math.min(2L * buffer.length, MAX_SIZE))];
+        if (buffer.length <= MAX_RETAINED_SIZE) {
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * 将整个文件读入缓冲区并访问
+     *
+     * @param file    文件
+     * @param visitor 访问器
+     * @throws IOException 异常
+     */
+    static void read(File file, DataVisitor visitor) throws IOException {
+        InputStream in = null;
+        try {
+            Object event = IOEvents.begin(IOEvents.FILE_READ);
+            in = FileUtil.openInputStream(file);
+            // 多留一个字节，读满说明文件在读取期间变大
+            byte[] buffer = get(file.length() + 1);
+            int length = IOUtil.read(in, buffer, 0, buffer.length);
+            if (length == buffer.length) {
+                byte[] rest = IOUtil.toByteArray(in);
+                byte[] data = new byte[length + rest.length];
+                System.arraycopy(buffer, 0, data, 0, length);
+                System.arraycopy(rest, 0, data, length, rest.length);
+                IOEvents.commitFileRead(event, file, data.length);
+                visitor.visit(file.getName(), data, 0, data.length);
+                return;
+            }
+            IOEvents.commitFileRead(event, file, length);
+            visitor.visit(file.getName(), buffer, 0, length);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+}
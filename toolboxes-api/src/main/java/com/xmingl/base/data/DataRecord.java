@@ -0,0 +1,42 @@
+package com.xmingl.base.data;
+
+/**
+ * 一条数据记录：文件名与数据内容<br/>
+ * 数据为null表示删除该记录
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据记录
+ */
+public class DataRecord {
+
+    private final String name;
+
+    private final byte[] data;
+
+    public DataRecord(String name, byte[] data) {
+        this.name = name;
+        this.data = data;
+    }
+
+    /**
+     * 删除记录
+     *
+     * @param name 文件名
+     * @return 删除记录
+     */
+    public static DataRecord delete(String name) {
+        return new DataRecord(name, null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public boolean isDelete() {
+        return data == null;
+    }
+}
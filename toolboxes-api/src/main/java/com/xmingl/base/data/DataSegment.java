@@ -0,0 +1,741 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写的数据段<br/>
+ * 一个数据文件夹（一般为天文件夹）可以打包为同级的{@code <文件夹名>.seg}，文件夹下的每个文件是段中的一条记录：
+ * <pre>
+ * 文件头：magic(int) version(int)
+ * 记录：  crc32(int) op(byte) nameLength(short) name dataLength(int) data
+ * </pre>
+ * 同名记录以最后一条为准，删除为追加一条{@link #OP_DELETE}记录，删除标记同时屏蔽已归档的同名记录；crc32校验op到data的全部字节，
+ * 校验失败的尾部视为未写完的记录，下次追加时截断，截断前将尾部字节追加到{@code <文件夹名>.seg.corrupt}保留；
+ * 文件头错误或版本不支持的段无法解析，读取和追加都抛出异常，不会覆盖其中的数据<br/>
+ * 偏移索引保存在{@code <文件夹名>.sidx}，读取整个文件夹只需一次顺序读取段文件<br/>
+ * 被覆盖、删除的记录占一半以上时由{@link DataWriter}在检查点{@link #compact()}，重写为每个名称只有一条记录的段文件
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据段
+ */
+public class DataSegment {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSegment.class);
+
+    /**
+     * 段文件后缀
+     */
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * 截断的尾部保存的文件后缀，附加在段文件名之后
+     */
+    public static final String CORRUPT_SUFFIX = ".corrupt";
+
+    /**
+     * 偏移索引文件后缀
+     */
+    public static final String INDEX_SUFFIX = ".sidx";
+
+    static final byte OP_PUT = 1;
+
+    static final byte OP_DELETE = 2;
+
+    private static final int MAGIC = 0x58534547;
+
+    private static final int INDEX_MAGIC = 0x58534958;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 偏移索引版本，2起保存删除标记
+     */
+    private static final int INDEX_VERSION = 2;
+
+    private static final int HEADER_LENGTH = 8;
+
+    /**
+     * crc32(4) op(1) nameLength(2) dataLength(4)
+     */
+    private static final int RECORD_OVERHEAD = 11;
+
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * 段文件超过此长度且失效的字节（被覆盖、删除的记录）超过一半时才压缩
+     */
+    private static final long COMPACT_MIN_LENGTH = 64 * 1024;
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * 最近使用的段，只缓存偏移索引，不缓存数据
+     */
+    private static final Map<String, DataSegment> SEGMENTS = new LinkedHashMap<String, DataSegment>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DataSegment> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * 按文件分段加锁，被挤出缓存的旧实例与新实例仍使用同一把锁
+     */
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private final File segmentFile;
+
+    private final File indexFile;
+
+    private final Object lock;
+
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * 最后一条为{@link #OP_DELETE}的记录名，用于屏蔽{@link DataArchive}中的同名记录
+     */
+    private final TreeSet<String> deleted = new TreeSet<>();
+
+    /**
+     * 已建立索引的段文件长度
+     */
+    private long indexedLength;
+
+    /**
+     * 已建立索引的段文件标识（如inode），压缩替换段文件后变化，被挤出缓存的旧实例据此重新加载
+     */
+    private Object indexedKey;
+
+    private DataSegment(File dir) {
+        this.segmentFile = segmentFile(dir);
+        this.indexFile = new File(segmentFile.getParentFile(), dir.getName() + INDEX_SUFFIX);
+        this.lock = LOCKS[(segmentFile.getPath().hashCode() & Integer.MAX_VALUE) % LOCKS.length];
+    }
+
+    /**
+     * 获取数据文件夹对应的段，段文件可以不存在
+     *
+     * @param dir 数据文件夹
+     * @return 段
+     */
+    public static DataSegment of(File dir) {
+        String key = dir.getAbsolutePath();
+        synchronized (SEGMENTS) {
+            DataSegment segment = SEGMENTS.get(key);
+            if (segment == null) {
+                segment = new DataSegment(dir);
+                SEGMENTS.put(key, segment);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * 数据文件夹对应的段文件
+     *
+     * @param dir 数据文件夹
+     * @return 段文件
+     */
+    public static File segmentFile(File dir) {
+        File absolute = dir.getAbsoluteFile();
+        return new File(absolute.getParentFile(), absolute.getName() + SEGMENT_SUFFIX);
+    }
+
+    public boolean exists() {
+        return segmentFile.isFile();
+    }
+
+    public File getSegmentFile() {
+        return segmentFile;
+    }
+
+    /**
+     * 获取段内所有记录名，按名称排序
+     *
+     * @return 记录名
+     * @throws IOException 异常
+     */
+    public List<String> names() throws IOException {
+        synchronized (lock) {
+            refresh();
+            return new ArrayList<>(entries.keySet());
+        }
+    }
+
+    /**
+     * 获取段内已删除的记录名（最后一条为删除），归档中的同名记录也视为已删除
+     *
+     * @return 记录名
+     * @throws IOException 异常
+     */
+    public Set<String> deletedNames() throws IOException {
+        synchronized (lock) {
+            refresh();
+            return new HashSet<>(deleted);
+        }
+    }
+
+    /**
+     * 获取段内记录数量
+     *
+     * @return 记录数量
+     * @throws IOException 异常
+     */
+    public int count() throws IOException {
+        synchronized (lock) {
+            refresh();
+            return entries.size();
+        }
+    }
+
+    /**
+     * 按名称顺序访问段内所有记录，整个段文件只读取一次
+     *
+     * @param visitor 访问器
+     * @throws IOException 异常
+     */
+    public void read(DataVisitor visitor) throws IOException {
+        read(null, visitor);
+    }
+
+    /**
+     * 按名称顺序访问段内指定的记录，只读取包含这些记录的一段连续区域
+     *
+     * @param names   记录名，为null时访问全部记录；不存在的记录忽略
+     * @param visitor 访问器
+     * @throws IOException 异常
+     */
+    public void read(Collection<String> names, DataVisitor visitor) throws IOException {
+        List<Map.Entry<String, Entry>> selected = new ArrayList<>();
+        byte[] buffer;
+        long start = Long.MAX_VALUE;
+        long end = 0;
+        synchronized (lock) {
+            refresh();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (names == null || names.contains(e.getKey())) {
+                    selected.add(e);
+                    start = Math.min(start, e.getValue().offset);
+                    end = Math.max(end, e.getValue().offset + e.getValue().length);
+                }
+            }
+            if (selected.isEmpty()) {
+                return;
+            }
+            buffer = DataReadBuffer.get(end - start);
+            RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+            try {
+                file.seek(start);
+                file.readFully(buffer, 0, (int) (end - start));
+            } finally {
+                IOUtil.closeQuietly(file);
+            }
+        }
+        for (Map.Entry<String, Entry> e : selected) {
+            visitor.visit(e.getKey(), buffer, (int) (e.getValue().offset - start), e.getValue().length);
+        }
+    }
+
+    /**
+     * 追加记录，一批记录只做一次写入
+     *
+     * @param records 记录
+     * @param sync    是否落盘（fsync）后返回
+     * @throws IOException 异常
+     */
+    public void append(List<DataRecord> records, boolean sync) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            refresh();
+            FileUtil.forceMkdir(segmentFile.getParentFile());
+            FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long position = indexedLength;
+                if (position == 0) {
+                    if (channel.size() >= HEADER_LENGTH) {
+                        throw new IOException("段文件头无法解析，拒绝追加：" + segmentFile);
+                    }
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                    header.putInt(MAGIC).putInt(VERSION).flip();
+                    writeFully(channel, header, 0);
+                    position = HEADER_LENGTH;
+                }
+                if (channel.size() > position) {
+                    // 截断未写完的尾部，先保留被截断的字节
+                    preserveTail(channel, position);
+                    channel.truncate(position);
+                }
+                long[] offsets = new long[records.size()];
+                ByteBuffer buffer = encode(records, position, offsets);
+                writeFully(channel, buffer, position);
+                if (sync) {
+                    channel.force(false);
+                }
+                for (int i = 0; i < records.size(); i++) {
+                    DataRecord record = records.get(i);
+                    if (record.isDelete()) {
+                        entries.remove(record.getName());
+                        deleted.add(record.getName());
+                    } else {
+                        entries.put(record.getName(), new Entry(offsets[i], record.getData().length));
+                        deleted.remove(record.getName());
+                    }
+                }
+                indexedLength = position + buffer.limit();
+            } finally {
+                IOUtil.closeQuietly(channel);
+            }
+            if (indexedKey == null) {
+                indexedKey = fileKey(attributes());
+            }
+            saveIndex();
+        }
+    }
+
+    /**
+     * 是否需要压缩：段文件超过{@link #COMPACT_MIN_LENGTH}且一半以上是被覆盖或删除的记录
+     *
+     * @return 是否需要压缩
+     * @throws IOException 异常
+     */
+    public boolean needsCompaction() throws IOException {
+        synchronized (lock) {
+            refresh();
+            return indexedLength >= COMPACT_MIN_LENGTH && liveLength() * 2 < indexedLength;
+        }
+    }
+
+    /**
+     * 压缩：每个名称只保留最后一条记录（删除标记也保留，继续屏蔽归档中的同名记录），
+     * 写入临时文件落盘后原子替换段文件；替换前先删除偏移索引，中途失败时由段文件重建<br/>
+     * 持有段的锁，压缩期间的追加与读取等待压缩完成
+     *
+     * @throws IOException 异常，段文件保持不变
+     */
+    public void compact() throws IOException {
+        synchronized (lock) {
+            refresh();
+            if (indexedLength == 0) {
+                return;
+            }
+            byte[] data = new byte[(int) indexedLength];
+            RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+            try {
+                file.readFully(data);
+                if (file.length() > indexedLength) {
+                    // 未写完的尾部不进入压缩后的段，先保留
+                    preserveTail(file.getChannel(), indexedLength);
+                }
+            } finally {
+                IOUtil.closeQuietly(file);
+            }
+            List<DataRecord> records = new ArrayList<>(entries.size() + deleted.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                int offset = (int) e.getValue().offset;
+                records.add(new DataRecord(e.getKey(), Arrays.copyOfRange(data, offset, offset + e.getValue().length)));
+            }
+            for (String name : deleted) {
+                records.add(DataRecord.delete(name));
+            }
+            long[] offsets = new long[records.size()];
+            ByteBuffer buffer = encode(records, HEADER_LENGTH, offsets);
+            File tmp = new File(segmentFile.getParentFile(), segmentFile.getName() + TMP_SUFFIX);
+            FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header, 0);
+                writeFully(channel, buffer, HEADER_LENGTH);
+                channel.force(false);
+            } finally {
+                IOUtil.closeQuietly(channel);
+            }
+            long before = indexedLength;
+            Files.deleteIfExists(indexFile.toPath());
+            Files.move(tmp.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entries.clear();
+            for (int i = 0; i < records.size(); i++) {
+                DataRecord record = records.get(i);
+                if (!record.isDelete()) {
+                    entries.put(record.getName(), new Entry(offsets[i], record.getData().length));
+                }
+            }
+            indexedLength = HEADER_LENGTH + buffer.limit();
+            indexedKey = fileKey(attributes());
+            saveIndex();
+            logger.info("compact: {} , length: {} -> {}", segmentFile, before, indexedLength);
+        }
+    }
+
+    /**
+     * 压缩后的段文件长度
+     */
+    private long liveLength() {
+        long length = HEADER_LENGTH;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            length += RECORD_OVERHEAD + e.getKey().getBytes(StandardCharsets.UTF_8).length + e.getValue().length;
+        }
+        for (String name : deleted) {
+            length += RECORD_OVERHEAD + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+
+    /**
+     * 将已追加的记录落盘（fsync）
+     *
+     * @throws IOException 异常
+     */
+    public void force() throws IOException {
+        synchronized (lock) {
+            if (!segmentFile.isFile()) {
+                return;
+            }
+            FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.WRITE);
+            try {
+                channel.force(false);
+            } finally {
+                IOUtil.closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * 删除段文件与偏移索引
+     *
+     * @throws IOException 异常
+     */
+    public void delete() throws IOException {
+        synchronized (lock) {
+            Files.deleteIfExists(segmentFile.toPath());
+            Files.deleteIfExists(indexFile.toPath());
+            entries.clear();
+            deleted.clear();
+            indexedLength = 0;
+            indexedKey = null;
+        }
+    }
+
+    /**
+     * 将段文件从指定位置到末尾的字节追加到{@link #CORRUPT_SUFFIX}文件
+     */
+    private void preserveTail(FileChannel channel, long position) throws IOException {
+        File corruptFile = new File(segmentFile.getParentFile(), segmentFile.getName() + CORRUPT_SUFFIX);
+        long size = channel.size() - position;
+        logger.warn("segment: {} , reason: {}", segmentFile, "截断尾部" + size + "字节，已保存至" + corruptFile.getName());
+        FileChannel out = FileChannel.open(corruptFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            long copied = 0;
+            while (copied < size) {
+                copied += channel.transferTo(position + copied, size - copied, out);
+            }
+            out.force(false);
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 编码记录
+     *
+     * @param records  记录
+     * @param position 写入位置
+     * @param offsets  输出每条记录数据的绝对位置
+     * @return 编码后的数据
+     */
+    private static ByteBuffer encode(List<DataRecord> records, long position, long[] offsets) {
+        byte[][] names = new byte[records.size()][];
+        int size = 0;
+        for (int i = 0; i < records.size(); i++) {
+            DataRecord record = records.get(i);
+            names[i] = record.getName().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("文件名过长：" + record.getName());
+            }
+            size += RECORD_OVERHEAD + names[i].length + (record.isDelete() ? 0 : record.getData().length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < records.size(); i++) {
+            DataRecord record = records.get(i);
+            byte[] data = record.isDelete() ? new byte[0] : record.getData();
+            int start = buffer.position();
+            buffer.putInt(0);
+            buffer.put(record.isDelete() ? OP_DELETE : OP_PUT);
+            buffer.putShort((short) names[i].length);
+            buffer.put(names[i]);
+            buffer.putInt(data.length);
+            offsets[i] = position + buffer.position();
+            buffer.put(data);
+            crc.reset();
+            crc.update(buffer.array(), start + 4, buffer.position() - start - 4);
+            buffer.putInt(start, (int) crc.getValue());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 段文件长度与索引不一致时，加载偏移索引并扫描未索引的尾部；段文件被压缩替换时重新加载
+     */
+    private void refresh() throws IOException {
+        BasicFileAttributes attributes = attributes();
+        long length = attributes == null ? 0 : attributes.size();
+        Object key = fileKey(attributes);
+        if (length == indexedLength && Objects.equals(key, indexedKey)) {
+            return;
+        }
+        long before = indexedLength;
+        if (length < indexedLength || indexedLength == 0 || !Objects.equals(key, indexedKey)) {
+            entries.clear();
+            deleted.clear();
+            indexedLength = 0;
+            indexedKey = key;
+            if (length == 0 || !checkHeader(length)) {
+                return;
+            }
+            loadIndex(length);
+            before = indexedLength;
+        }
+        if (indexedLength < length) {
+            scan(length);
+        }
+        if (indexedLength != before) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * 段文件属性，一次系统调用同时得到长度与标识
+     *
+     * @return 属性，段文件不存在时为null
+     */
+    private BasicFileAttributes attributes() throws IOException {
+        try {
+            return Files.readAttributes(segmentFile.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Object fileKey(BasicFileAttributes attributes) {
+        return attributes == null ? null : attributes.fileKey();
+    }
+
+    private void scan(long length) throws IOException {
+        long from = indexedLength;
+        byte[] buffer = new byte[(int) (length - from)];
+        RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+        try {
+            file.seek(from);
+            file.readFully(buffer);
+        } finally {
+            IOUtil.closeQuietly(file);
+        }
+        // 文件头已由checkHeader校验
+        int position = from == 0 ? HEADER_LENGTH : 0;
+        CRC32 crc = new CRC32();
+        int next;
+        while ((next = parse(buffer, position, from, crc)) > 0) {
+            position = next;
+        }
+        if (position < buffer.length) {
+            logger.warn("segment: {} , reason: {}", segmentFile, "尾部存在未写完的记录：" + (buffer.length - position) + "字节");
+        }
+        indexedLength = from + position;
+    }
+
+    /**
+     * 解析一条记录
+     *
+     * @return 下一条记录位置，记录不完整或校验失败时返回-1
+     */
+    private int parse(byte[] buffer, int position, long base, CRC32 crc) {
+        if (position + RECORD_OVERHEAD > buffer.length) {
+            return -1;
+        }
+        byte op = buffer[position + 4];
+        int nameLength = ((buffer[position + 5] & 0xFF) << 8) | (buffer[position + 6] & 0xFF);
+        int nameStart = position + 7;
+        if (nameStart + nameLength + 4 > buffer.length) {
+            return -1;
+        }
+        int dataLength = readInt(buffer, nameStart + nameLength);
+        int dataStart = nameStart + nameLength + 4;
+        if (dataLength < 0 || dataStart + dataLength > buffer.length) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(buffer, position + 4, dataStart + dataLength - position - 4);
+        if ((int) crc.getValue() != readInt(buffer, position)) {
+            return -1;
+        }
+        String name = new String(buffer, nameStart, nameLength, StandardCharsets.UTF_8);
+        if (op == OP_PUT) {
+            entries.put(name, new Entry(base + dataStart, dataLength));
+            deleted.remove(name);
+        } else if (op == OP_DELETE) {
+            entries.remove(name);
+            deleted.add(name);
+        } else {
+            return -1;
+        }
+        return dataStart + dataLength;
+    }
+
+    /**
+     * 校验文件头
+     *
+     * @param length 段文件长度
+     * @return 文件头是否完整；创建段文件时文件头未写完（其中没有记录）返回false，下次追加时重写文件头
+     * @throws IOException 文件头错误或版本不支持
+     */
+    private boolean checkHeader(long length) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(length, HEADER_LENGTH)];
+        RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+        try {
+            file.readFully(buffer);
+        } finally {
+            IOUtil.closeQuietly(file);
+        }
+        if (buffer.length < HEADER_LENGTH && isHeaderPrefix(buffer)) {
+            logger.warn("segment: {} , reason: {}", segmentFile, "文件头未写完");
+            return false;
+        }
+        if (buffer.length < HEADER_LENGTH || readInt(buffer, 0) != MAGIC) {
+            throw new IOException("段文件头错误：" + segmentFile);
+        }
+        if (readInt(buffer, 4) != VERSION) {
+            throw new IOException("不支持的段文件版本" + readInt(buffer, 4) + "：" + segmentFile);
+        }
+        return true;
+    }
+
+    /**
+     * 是否为文件头的前几个字节
+     */
+    private static boolean isHeaderPrefix(byte[] buffer) {
+        byte[] header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION).array();
+        for (int i = 0; i < buffer.length; i++) {
+            if (buffer[i] != header[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] buffer, int position) {
+        return ((buffer[position] & 0xFF) << 24)
+                | ((buffer[position + 1] & 0xFF) << 16)
+                | ((buffer[position + 2] & 0xFF) << 8)
+                | (buffer[position + 3] & 0xFF);
+    }
+
+    private void loadIndex(long length) {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(FileUtil.openInputStream(indexFile)));
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("索引文件格式错误");
+            }
+            long covered = in.readLong();
+            if (covered > length) {
+                throw new IOException("索引与段文件不一致");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                entries.put(in.readUTF(), new Entry(in.readLong(), in.readInt()));
+            }
+            n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                deleted.add(in.readUTF());
+            }
+            indexedLength = covered;
+        } catch (IOException e) {
+            logger.warn("segment index: {} , reason: {}", indexFile, e.getMessage());
+            entries.clear();
+            deleted.clear();
+            indexedLength = 0;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 偏移索引可以随时从段文件重建，写入失败只记录日志
+     */
+    private void saveIndex() {
+        File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(FileUtil.openOutputStream(tmp)));
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(indexedLength);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().offset);
+                out.writeInt(e.getValue().length);
+            }
+            out.writeInt(deleted.size());
+            for (String name : deleted) {
+                out.writeUTF(name);
+            }
+            out.close();
+            out = null;
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("segment index: {} , reason: {}", indexFile, e.getMessage());
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    /**
+     * 记录数据在段文件中的位置
+     */
+    private static final class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
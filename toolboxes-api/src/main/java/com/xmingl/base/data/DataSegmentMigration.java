@@ -0,0 +1,118 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 数据段迁移工具：将“一个事件一个文件”的天文件夹打包为{@link DataSegment}<br/>
+ * 段文件落盘后才删除原文件，中途失败时原文件与段中的同名记录内容一致，读取时以原文件为准<br/>
+ * 用法：{@code java com.xmingl.base.data.DataSegmentMigration [保留最近天数，默认1]}，服务运行时拒绝运行（{@link DataDirectoryLock}），
+ * 迁移期间服务也无法启动
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据段迁移
+ */
+public class DataSegmentMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSegmentMigration.class);
+
+    public static void main(String[] args) throws IOException {
+        int keepDays = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        File root = new File(DataUtil.BASE_FILE_PATH);
+        DataDirectoryLock.acquire(root);
+        int packed = migrate(root, keepDays);
+        logger.info("segment migration finish, packed days: {}", packed);
+    }
+
+    /**
+     * 打包数据根目录下所有早于保留天数的天文件夹
+     *
+     * @param root     数据根目录
+     * @param keepDays 保留最近几天不打包（包含今天）
+     * @return 打包的天数
+     * @throws IOException 异常
+     */
+    public static int migrate(File root, int keepDays) throws IOException {
+        long lastDay = DateUtil.getEpochDay(new Date()) - keepDays;
+        return migrate(root, lastDay, 0);
+    }
+
+    private static int migrate(File dir, long lastDay, int packed) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return packed;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (!child.isDirectory()) {
+                continue;
+            }
+            long epochDay = DateUtil.parseEpochDay(child.getName());
+            if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+                packed = migrate(child, lastDay, packed);
+            } else if (epochDay <= lastDay && pack(child) > 0) {
+                packed++;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * 将文件夹下的文件追加到段中，并删除原文件
+     *
+     * @param dir 数据文件夹
+     * @return 打包的记录数
+     * @throws IOException 异常
+     */
+    public static int pack(File dir) throws IOException {
+        return pack(dir, null, null);
+    }
+
+    /**
+     * 将文件夹下的文件按指定编码重新编码后追加到段中，并删除原文件
+     *
+     * @param dir   数据文件夹
+     * @param codec 编码，为null时不重新编码
+     * @param clazz 数据类型
+     * @return 打包的记录数
+     * @throws IOException 异常
+     */
+    public static int pack(File dir, DataCodec codec, Class<?> clazz) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files);
+        List<DataRecord> records = new ArrayList<>();
+        List<File> packedFiles = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                byte[] data = FileUtil.readFileToByteArray(file);
+                if (codec != null && !codec.accepts(data, 0, data.length)) {
+                    data = codec.encode(DataUtil.decode(data, 0, data.length, clazz));
+                }
+                records.add(new DataRecord(file.getName(), data));
+                packedFiles.add(file);
+            }
+        }
+        DataSegment.of(dir).append(records, true);
+        for (File file : packedFiles) {
+            FileUtil.forceDelete(file);
+        }
+        String[] rest = dir.list();
+        if (rest != null && rest.length == 0) {
+            FileUtil.forceDelete(dir);
+        }
+        logger.info("pack: {} , records: {}", dir, records.size());
+        return records.size();
+    }
+}
@@ -0,0 +1,104 @@
+package com.xmingl.base.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并同一个键的并发加载（single-flight）<br/>
+ * 同一时间每个键只有一次加载在进行，期间到达的调用等待并共享其结果（或异常），加载结束后即移除，不缓存结果。
+ * 数据变化时调用{@link #forget(Object)}，之后到达的调用重新加载，不会拿到变化前开始的加载结果
+ *
+ * @author XMINGL
+ * @version 0.0.1 合并并发加载
+ */
+public class DataSingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 加载，同一个键已有加载在进行时等待其结果
+     *
+     * @param key    键
+     * @param loader 加载器
+     * @return 值
+     * @throws IOException 加载异常
+     */
+    public V load(K key, DataCache.Loader<V> loader) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        loads.increment();
+        try {
+            V value = loader.load();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 数据变化后调用，之后的调用不再等待进行中的加载
+     *
+     * @param key 键
+     */
+    public void forget(K key) {
+        flights.remove(key);
+    }
+
+    /**
+     * 数据全部可能变化时调用
+     */
+    public void forgetAll() {
+        flights.clear();
+    }
+
+    /**
+     * 加载统计
+     *
+     * @return 实际加载次数、被合并的调用次数及进行中的加载数
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("loads", loads.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("inFlight", (long) flights.size());
+        return stats;
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待数据加载被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
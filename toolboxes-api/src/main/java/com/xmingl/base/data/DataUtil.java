@@ -2,15 +2,34 @@ package com.xmingl.base.data;
 
 import com.alibaba.fastjson.JSON;
 import com.xmingl.SystemBaseInfo;
+import com.xmingl.base.date.DateUtil;
 import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOEvents;
+import com.xmingl.base.io.IOUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
- * TODO 初版制定计划为JSON数据格式类型，打算考虑后期整改为多种数据类型全部支持
+ * 数据默认为JSON格式，也支持{@link DataCodecs#BINARY}等其他编码，读取时按首字节识别编码
  * @author XMINGL
  * @version 0.0.1 基础的数据读写工具
  */
@@ -18,6 +37,16 @@ public class DataUtil {
 
     public static String BASE_FILE_PATH = FileUtil.getUserDirectoryPath()+FileUtil.SYSTEM_SEPARATOR+ SystemBaseInfo.PROJECT_NAME;
 
+    /**
+     * 每个分片至少读取的文件数，文件太少时并行的调度开销大于收益
+     */
+    private static final int MIN_FILES_PER_TASK = 8;
+
+    /**
+     * 跨天读取时每天每次读取的数据量
+     */
+    private static final int RANGE_PAGE_SIZE = 64;
+
     /**
      * 获取数据
      *
@@ -37,37 +66,417 @@ public class DataUtil {
      * @throws IOException 异常
      */
     public static String loadDataString(String filePath) throws IOException {
-        return loadDataString(new File(BASE_FILE_PATH,filePath));
+        DataMetrics.Module metrics = DataMetrics.module(filePath);
+        long start = System.nanoTime();
+        File file = new File(BASE_FILE_PATH, filePath);
+        // 按读到的字节数统计，不读取文件长度
+        byte[] data;
+        InputStream in = null;
+        try {
+            Object event = IOEvents.begin(IOEvents.FILE_READ);
+            in = FileUtil.openInputStream(file);
+            data = IOUtil.toByteArray(in);
+            IOEvents.commitFileRead(event, file, data.length);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+        metrics.read(1, data.length);
+        metrics.record(DataMetrics.Operation.LOAD_STRING, start);
+        return new String(data, StandardCharsets.UTF_8);
     }
 
     /**
-     * 获取数据集合
+     * 获取数据集合<br/>
+     * 每条数据从读取的字节解码，不先读成整个文件的字符串，按文件名排序
      * @param filePath 相对路径
      * @param clazz 类型
      * @return 数据集合
      * @throws IOException 异常
      */
     public static <T> List<T> loadDataList(String filePath, Class<T> clazz) throws IOException {
-        List<T> data = new ArrayList<>();
+        return loadDataList(filePath, clazz, 1);
+    }
+
+    /**
+     * 获取数据集合，文件较多时分片并行读取<br/>
+     * 无论是否并行，结果都按文件名排序
+     * @param filePath 相对路径
+     * @param clazz 类型
+     * @param parallelism 并行读取的分片数，小于等于1时串行读取
+     * @return 数据集合
+     * @throws IOException 异常
+     */
+    public static <T> List<T> loadDataList(String filePath, Class<T> clazz, int parallelism) throws IOException {
+        DataMetrics.Module metrics = DataMetrics.module(filePath);
+        long start = System.nanoTime();
+        List<T> items = loadDataPage(filePath, clazz, null, 0, parallelism).getItems();
+        metrics.record(DataMetrics.Operation.LOAD_LIST, start);
+        return items;
+    }
+
+    /**
+     * 按名称分页获取数据集合，只读取本页的数据<br/>
+     * 文件夹中的文件、已打包为{@link DataSegment}和已归档为{@link DataArchive}的数据按名称合并，同名以文件为准，
+     * 段中已删除的记录不再读取归档中的同名记录
+     * @param filePath 相对路径
+     * @param clazz 类型
+     * @param cursor 游标，即上一页最后一条数据的名称，为空时从头开始
+     * @param limit 每页数量，小于等于0时不分页
+     * @param parallelism 并行读取的分片数，小于等于1时串行读取
+     * @return 本页数据
+     * @throws IOException 异常
+     */
+    public static <T> DataPage<T> loadDataPage(String filePath, Class<T> clazz, String cursor, int limit, int parallelism) throws IOException {
+        DataMetrics.Module metrics = DataMetrics.module(filePath);
+        File dir = new File(BASE_FILE_PATH, filePath);
         List<File> files = new ArrayList<>();
-        FileUtil.listFiles(new File(BASE_FILE_PATH,filePath),files);
-        for (File f : files) {
-            String dataString = loadDataString(new File(BASE_FILE_PATH+filePath+FileUtil.SYSTEM_SEPARATOR+f.getName()));
-            data.add(JSON.parseObject(dataString, clazz));
+        FileUtil.listFiles(dir, files);
+        DataSegment segment = DataSegment.of(dir);
+        DataArchive archive = DataArchive.of(dir);
+        // 名称 -> 来源：文件、段或归档，同名时文件优先于段，段优先于归档
+        TreeMap<String, Object> names = new TreeMap<>();
+        if (archive.exists()) {
+            for (String name : archive.names()) {
+                names.put(name, archive);
+            }
+        }
+        if (segment.exists()) {
+            // 段中的删除标记屏蔽归档中的同名记录
+            names.keySet().removeAll(segment.deletedNames());
+            for (String name : segment.names()) {
+                names.put(name, segment);
+            }
+        }
+        for (File file : files) {
+            names.put(file.getName(), file);
+        }
+        Map<String, Object> rest = cursor == null || cursor.isEmpty() ? names : names.tailMap(cursor, false);
+        List<String> pageNames = new ArrayList<>();
+        List<File> pageFiles = new ArrayList<>();
+        Set<String> segmentNames = new HashSet<>();
+        Set<String> archiveNames = new HashSet<>();
+        String nextCursor = null;
+        for (Map.Entry<String, Object> e : rest.entrySet()) {
+            if (limit > 0 && pageNames.size() == limit) {
+                nextCursor = pageNames.get(pageNames.size() - 1);
+                break;
+            }
+            pageNames.add(e.getKey());
+            if (e.getValue() == segment) {
+                segmentNames.add(e.getKey());
+            } else if (e.getValue() == archive) {
+                archiveNames.add(e.getKey());
+            } else {
+                pageFiles.add((File) e.getValue());
+            }
+        }
+        List<T> loaded = loadFiles(pageFiles, clazz, parallelism, metrics);
+        if (segmentNames.isEmpty() && archiveNames.isEmpty()) {
+            return new DataPage<>(loaded, nextCursor);
+        }
+        Map<String, T> data = new HashMap<>();
+        DecodeBatch batch = new DecodeBatch();
+        DataVisitor decoder = (name, bytes, offset, length) -> {
+            long start = System.nanoTime();
+            data.put(name, decode(bytes, offset, length, clazz));
+            long nanos = System.nanoTime() - start;
+            batch.decoded(length, nanos);
+            metrics.parsed(nanos);
+            metrics.read(0, length);
+        };
+        if (!archiveNames.isEmpty()) {
+            archive.read(archiveNames, decoder);
+            metrics.read(1, 0);
+        }
+        if (!segmentNames.isEmpty()) {
+            segment.read(segmentNames, decoder);
+            metrics.read(1, 0);
+        }
+        batch.commit(dir.getPath());
+        for (int i = 0; i < pageFiles.size(); i++) {
+            data.put(pageFiles.get(i).getName(), loaded.get(i));
+        }
+        List<T> items = new ArrayList<>(pageNames.size());
+        for (String name : pageNames) {
+            // 列出名称之后被删除的记录忽略
+            if (data.containsKey(name)) {
+                items.add(data.get(name));
+            }
+        }
+        return new DataPage<>(items, nextCursor);
+    }
+
+    /**
+     * 惰性读取一段日期内的数据，按天归并，同一天内按名称排序<br/>
+     * 只列一次模块文件夹得到有数据的天，每天在轮到时才按页读取，停止迭代后不再读取后续的天
+     * @param filePath 模块相对路径
+     * @param fromDay 开始epoch-day（包含）
+     * @param toDay 结束epoch-day（包含）
+     * @param clazz 类型
+     * @return 数据迭代器，{@link DataMergeIterator#currentKey()}为数据所在的epoch-day；读取失败时抛出{@link UncheckedIOException}
+     */
+    public static <T> DataMergeIterator<T> iterateDataRange(String filePath, long fromDay, long toDay, Class<T> clazz) {
+        List<DataMergeIterator.Partition<T>> days = new ArrayList<>();
+        for (long epochDay : listDataNums(filePath, fromDay, toDay).keySet()) {
+            String dayPath = new File(filePath, DateUtil.formatEpochDay(epochDay)).getPath();
+            days.add(new DataMergeIterator.Partition<T>() {
+                @Override
+                public long key() {
+                    return epochDay;
+                }
+
+                @Override
+                public Iterator<T> open() throws IOException {
+                    return new PageIterator<>(dayPath, clazz);
+                }
+            });
+        }
+        return new DataMergeIterator<>(days, null);
+    }
+
+    /**
+     * 按页读取一个文件夹的数据，只持有当前页
+     */
+    private static final class PageIterator<T> implements Iterator<T> {
+        private final String filePath;
+        private final Class<T> clazz;
+        private Iterator<T> page;
+        private String nextCursor;
+
+        PageIterator(String filePath, Class<T> clazz) throws IOException {
+            this.filePath = filePath;
+            this.clazz = clazz;
+            load(null);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && nextCursor != null) {
+                try {
+                    load(nextCursor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private void load(String cursor) throws IOException {
+            DataPage<T> data = loadDataPage(filePath, clazz, cursor, RANGE_PAGE_SIZE, 1);
+            page = data.getItems().iterator();
+            nextCursor = data.getNextCursor();
         }
-        return data;
     }
 
     /**
-     * 获取数据量
-     * @param filePath
-     * @return
-     * @throws IOException
+     * 读取文件，结果与文件一一对应
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> loadFiles(List<File> files, Class<T> clazz, int parallelism, DataMetrics.Module metrics) throws IOException {
+        int tasks = Math.min(parallelism, files.size() / MIN_FILES_PER_TASK);
+        Object[] results = new Object[files.size()];
+        if (tasks <= 1) {
+            loadFiles(files, 0, files.size(), clazz, results, metrics);
+            return (List<T>) Arrays.asList(results);
+        }
+        // 连续分片，每个分片写入自己的下标范围，第一片[0, chunk)由当前线程读取，其余提交到读取线程池
+        List<Future<Void>> futures = new ArrayList<>(tasks - 1);
+        int chunk = (files.size() + tasks - 1) / tasks;
+        for (int from = chunk; from < files.size(); from += chunk) {
+            int start = from;
+            int end = Math.min(from + chunk, files.size());
+            futures.add(DataIOExecutor.submit(() -> {
+                loadFiles(files, start, end, clazz, results, metrics);
+                return null;
+            }));
+        }
+        loadFiles(files, 0, chunk, clazz, results, metrics);
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("读取数据被中断");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+
+    private static <T> void loadFiles(List<File> files, int from, int to, Class<T> clazz, Object[] results,
+                                      DataMetrics.Module metrics) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        DecodeBatch batch = new DecodeBatch();
+        for (int i = from; i < to; i++) {
+            int index = i;
+            File file = files.get(i);
+            DataReadBuffer.read(file, (name, bytes, offset, length) -> {
+                long start = System.nanoTime();
+                results[index] = decode(bytes, offset, length, clazz);
+                long nanos = System.nanoTime() - start;
+                batch.decoded(length, nanos);
+                metrics.parsed(nanos);
+                metrics.read(1, length);
+            });
+        }
+        batch.commit(files.get(from).getParent());
+    }
+
+    /**
+     * 一批数据的解码统计，整批只发出一个{@link IOEvents#DATA_DECODE}事件
+     */
+    private static final class DecodeBatch {
+        final Object event = IOEvents.begin(IOEvents.DATA_DECODE);
+        int count;
+        long bytes;
+        long nanos;
+
+        void decoded(int length, long nanos) {
+            count++;
+            bytes += length;
+            this.nanos += nanos;
+        }
+
+        void commit(String dir) {
+            IOEvents.commitDataDecode(event, dir, count, bytes, nanos);
+        }
+    }
+
+    /**
+     * 按首字节识别编码并解码，JSON数据从UTF-8字节解码，不先把整个文件读成字符串
+     * @param data 数据所在数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @param clazz 类型
+     * @return 数据
+     * @throws IOException 异常
+     * @see DataCodecs#detect(byte[], int, int)
+     */
+    static <T> T decode(byte[] data, int offset, int length, Class<T> clazz) throws IOException {
+        return DataCodecs.detect(data, offset, length).decode(data, offset, length, clazz);
+    }
+
+    /**
+     * 获取数据量<br/>
+     * 路径为天文件夹（yyyyMMdd）时从{@link DataCountIndex}获取（包含已打包为{@link DataSegment}和已归档的数据），否则遍历文件夹统计
+     * @param filePath 相对路径
+     * @return 数据量
+     * @throws IOException 异常
      */
     public static int listDataNum(String filePath) throws IOException{
-        List<File> files = new ArrayList<>();
-        FileUtil.listFiles(new File(BASE_FILE_PATH,filePath),files);
-        return files.size();
+        DataMetrics.Module metrics = DataMetrics.module(filePath);
+        long start = System.nanoTime();
+        File dir = new File(BASE_FILE_PATH, filePath);
+        long epochDay = DateUtil.parseEpochDay(dir.getName());
+        int count;
+        if (epochDay != DateUtil.INVALID_EPOCH_DAY) {
+            count = DataCountIndex.of(dir.getParentFile()).count(epochDay);
+        } else {
+            List<File> files = new ArrayList<>();
+            FileUtil.listFiles(dir,files);
+            count = files.size();
+        }
+        metrics.record(DataMetrics.Operation.LIST_NUM, start);
+        return count;
+    }
+
+    /**
+     * 获取一段日期内每天的数据量，一次有序遍历模块下的天文件夹
+     * @param filePath 模块相对路径
+     * @param fromDay 开始epoch-day（包含）
+     * @param toDay 结束epoch-day（包含）
+     * @return epoch-day -> 数据量，数据量为0的天不返回
+     */
+    public static Map<Long, Integer> listDataNums(String filePath, long fromDay, long toDay) {
+        return DataCountIndex.of(new File(BASE_FILE_PATH, filePath)).counts(fromDay, toDay);
+    }
+
+    /**
+     * 获取一年的数据量汇总，由{@link DataCountIndex}在数据量变化时增量维护
+     * @param filePath 模块相对路径
+     * @param year 年
+     * @return 每天、每月的数据量及全年合计
+     */
+    public static DataYearCounts listDataYear(String filePath, int year) {
+        return DataCountIndex.of(new File(BASE_FILE_PATH, filePath)).year(year);
+    }
+
+    /**
+     * 获取某一天数据的修改标记，可用于判断基于该天数据的结果是否需要重新计算
+     * @param filePath 天文件夹相对路径
+     * @return 修改标记，没有数据时为0，路径不是天文件夹时为-1
+     */
+    public static long getDataStamp(String filePath) {
+        File dir = new File(BASE_FILE_PATH, filePath);
+        long epochDay = DateUtil.parseEpochDay(dir.getName());
+        if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+            return -1L;
+        }
+        return DataCountIndex.of(dir.getParentFile()).modified(epochDay);
+    }
+
+    /**
+     * 保存数据，由后台写入线程与同一批的其他写入合并，先写{@link DataWal}再追加到天文件夹的{@link DataSegment}
+     * @param filePath 天文件夹相对路径
+     * @param name 文件名
+     * @param value 数据
+     * @param codec 编码
+     * @param durability 落盘策略
+     * @return 写入完成后结束，写入失败时异常结束
+     * @throws IOException 编码失败或等待写入队列时被中断
+     */
+    public static CompletableFuture<Void> saveData(String filePath, String name, Object value, DataCodec codec,
+                                                   DataWriter.Durability durability) throws IOException {
+        return DataWriter.write(new File(BASE_FILE_PATH, filePath), new DataRecord(name, codec.encode(value)), durability);
+    }
+
+    /**
+     * 在一个事务中保存多条数据，崩溃后由{@link DataWal}重放，要么全部写入，要么全部不写入
+     * @param filePath 天文件夹相对路径
+     * @param values 文件名 -> 数据
+     * @param codec 编码
+     * @param durability 落盘策略
+     * @return 写入完成后结束，写入失败时异常结束
+     * @throws IOException 编码失败或等待写入队列时被中断
+     */
+    public static CompletableFuture<Void> saveData(String filePath, Map<String, ?> values, DataCodec codec,
+                                                   DataWriter.Durability durability) throws IOException {
+        List<DataRecord> records = new ArrayList<>(values.size());
+        for (Map.Entry<String, ?> e : values.entrySet()) {
+            records.add(new DataRecord(e.getKey(), codec.encode(e.getValue())));
+        }
+        return DataWriter.write(Collections.singletonMap(new File(BASE_FILE_PATH, filePath), records), durability);
+    }
+
+    /**
+     * 删除数据，与写入一样由后台写入线程批量提交<br/>
+     * 已归档为{@link DataArchive}的数据不修改归档，由段中的删除标记屏蔽，再次归档时不再写入
+     * @param filePath 天文件夹相对路径
+     * @param name 文件名
+     * @param durability 落盘策略
+     * @return 删除完成后结束，删除失败时异常结束
+     * @throws IOException 等待写入队列时被中断
+     */
+    public static CompletableFuture<Void> deleteData(String filePath, String name, DataWriter.Durability durability) throws IOException {
+        return DataWriter.write(new File(BASE_FILE_PATH, filePath), DataRecord.delete(name), durability);
     }
 
     /**
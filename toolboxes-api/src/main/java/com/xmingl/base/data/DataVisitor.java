@@ -0,0 +1,23 @@
+package com.xmingl.base.data;
+
+import java.io.IOException;
+
+/**
+ * 数据记录访问器，数据以字节数组片段的形式传入，访问结束后不可再持有该数组
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据记录访问器
+ */
+public interface DataVisitor {
+
+    /**
+     * 访问一条记录
+     *
+     * @param name   文件名
+     * @param data   数据所在数组
+     * @param offset 数据起始位置
+     * @param length 数据长度
+     * @throws IOException 异常
+     */
+    void visit(String name, byte[] data, int offset, int length) throws IOException;
+}
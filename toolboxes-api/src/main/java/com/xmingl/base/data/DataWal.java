@@ -0,0 +1,315 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 模块的预写日志（write-ahead log）<br/>
+ * 保存在模块文件夹下的{@link #WAL_FILE_NAME}，一个事务（可包含多个天文件夹的多条记录）为一条日志：
+ * <pre>
+ * 文件头：magic(int) version(int)
+ * 日志：  crc32(int) length(int) payload
+ * payload：count(int) {dirName(UTF) op(byte) name(UTF) dataLength(int) data}...
+ * </pre>
+ * 事务先写日志再追加到{@link DataSegment}；检查点时段文件已落盘，日志截断为只剩文件头。
+ * 启动时重放检查点之后的日志，校验失败的尾部视为未提交的事务丢弃，恢复时间只与未检查点的日志长度有关；
+ * 文件头无法识别的日志移到{@link #CORRUPT_SUFFIX}后重新开始，重放失败后拒绝追加与检查点，避免截断未重放的事务；
+ * 追加失败时截断到追加前的长度，截断也失败时同样拒绝追加与检查点
+ *
+ * @author XMINGL
+ * @version 0.0.1 预写日志
+ */
+public class DataWal {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataWal.class);
+
+    /**
+     * 日志文件名
+     */
+    public static final String WAL_FILE_NAME = "data.wal";
+
+    /**
+     * 文件头无法识别的日志移到：日志文件名 + 后缀 + 时间戳
+     */
+    public static final String CORRUPT_SUFFIX = ".corrupt.";
+
+    private static final int MAGIC = 0x5857414C;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final Map<String, DataWal> WALS = new ConcurrentHashMap<>();
+
+    private final File moduleDir;
+
+    private final File walFile;
+
+    private FileChannel channel;
+
+    /**
+     * 重放失败或追加失败后无法截断的原因，非null时拒绝追加与检查点，直到{@link #recover()}成功
+     */
+    private String failure;
+
+    private DataWal(File moduleDir) {
+        this.moduleDir = moduleDir.getAbsoluteFile();
+        this.walFile = new File(this.moduleDir, WAL_FILE_NAME);
+    }
+
+    /**
+     * 获取模块的预写日志
+     *
+     * @param moduleDir 模块文件夹
+     * @return 预写日志
+     */
+    public static DataWal of(File moduleDir) {
+        return WALS.computeIfAbsent(moduleDir.getAbsolutePath(), path -> new DataWal(moduleDir));
+    }
+
+    public File getWalFile() {
+        return walFile;
+    }
+
+    /**
+     * 追加事务，多个事务只做一次写入
+     *
+     * @param transactions 事务：天文件夹 -> 记录，天文件夹须在本模块文件夹下
+     * @param sync         是否落盘（fsync）后返回
+     * @throws IOException 异常，日志已截断到追加前的长度
+     */
+    public synchronized void append(List<Map<File, List<DataRecord>>> transactions, boolean sync) throws IOException {
+        checkRecovered();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+        for (Map<File, List<DataRecord>> transaction : transactions) {
+            byte[] payload = encode(transaction);
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            out.writeInt((int) crc.getValue());
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        FileChannel channel = channel();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long start = channel.size();
+        try {
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            // 写入失败的事务不能留在日志中，否则重放时会生效
+            try {
+                channel.truncate(start);
+            } catch (IOException | RuntimeException t) {
+                failure = "追加失败后无法截断：" + (t.getMessage() == null ? t.toString() : t.getMessage());
+                logger.error("wal: {} , reason: {}", walFile, failure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 将已追加的日志落盘（fsync）
+     *
+     * @throws IOException 异常
+     */
+    public synchronized void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 日志长度
+     *
+     * @return 字节数
+     * @throws IOException 异常
+     */
+    public synchronized long length() throws IOException {
+        return channel == null ? walFile.length() : channel.size();
+    }
+
+    /**
+     * 检查点：日志中的事务都已追加到段且段已落盘后调用，截断日志
+     *
+     * @throws IOException 异常
+     */
+    public synchronized void checkpoint() throws IOException {
+        checkRecovered();
+        FileChannel channel = channel();
+        if (channel.size() > HEADER_LENGTH) {
+            channel.truncate(HEADER_LENGTH);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 重放检查点之后的日志：事务重新追加到段（同名记录以最后一条为准，重复追加结果不变），段落盘后截断日志<br/>
+     * 文件头无法识别时日志移到{@link #CORRUPT_SUFFIX}，不重放；重放失败时日志保持不变，之后拒绝追加与检查点，
+     * 再次调用成功后恢复
+     *
+     * @return 重放的事务数
+     * @throws IOException 重放失败
+     */
+    public synchronized int recover() throws IOException {
+        failure = null;
+        try {
+            return replay();
+        } catch (IOException | RuntimeException e) {
+            failure = e.getMessage() == null ? e.toString() : e.getMessage();
+            throw e;
+        }
+    }
+
+    private int replay() throws IOException {
+        if (walFile.length() < HEADER_LENGTH) {
+            return 0;
+        }
+        byte[] log = new byte[(int) walFile.length()];
+        RandomAccessFile file = new RandomAccessFile(walFile, "r");
+        try {
+            file.readFully(log);
+        } finally {
+            IOUtil.closeQuietly(file);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(log));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            moveAside();
+            return 0;
+        }
+        if (log.length == HEADER_LENGTH) {
+            return 0;
+        }
+        Map<File, List<DataRecord>> records = new LinkedHashMap<>();
+        int transactions = 0;
+        int position = HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        while (position + 8 <= log.length) {
+            int checksum = in.readInt();
+            int length = in.readInt();
+            if (length < 0 || position + 8 + length > log.length) {
+                break;
+            }
+            crc.reset();
+            crc.update(log, position + 8, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            for (Map.Entry<File, List<DataRecord>> e : decode(in).entrySet()) {
+                records.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).addAll(e.getValue());
+            }
+            position += 8 + length;
+            transactions++;
+        }
+        if (position < log.length) {
+            logger.warn("wal: {} , reason: {}", walFile, "尾部存在未提交的事务：" + (log.length - position) + "字节");
+        }
+        for (Map.Entry<File, List<DataRecord>> e : records.entrySet()) {
+            DataSegment segment = DataSegment.of(e.getKey());
+            segment.append(e.getValue(), false);
+            segment.force();
+            DataWriter.deleteShadowed(e.getKey(), e.getValue());
+        }
+        checkpoint();
+        logger.info("wal recover: {} , transactions: {}", walFile, transactions);
+        return transactions;
+    }
+
+    private void checkRecovered() throws IOException {
+        if (failure != null) {
+            throw new IOException("预写日志不可用，拒绝写入：" + walFile + "，" + failure);
+        }
+    }
+
+    /**
+     * 将文件头无法识别的日志移走保留，之后重新创建日志
+     *
+     * @throws IOException 异常
+     */
+    private void moveAside() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        File corrupt = new File(moduleDir, WAL_FILE_NAME + CORRUPT_SUFFIX + System.currentTimeMillis());
+        Files.move(walFile.toPath(), corrupt.toPath());
+        logger.error("wal: {} , reason: {}", walFile, "日志文件头错误，已移到" + corrupt.getName());
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            FileUtil.forceMkdir(moduleDir);
+            channel = FileChannel.open(walFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_LENGTH) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                channel.truncate(0);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(false);
+            }
+        }
+        return channel;
+    }
+
+    private byte[] encode(Map<File, List<DataRecord>> transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = 0;
+        for (List<DataRecord> records : transaction.values()) {
+            count += records.size();
+        }
+        out.writeInt(count);
+        for (Map.Entry<File, List<DataRecord>> e : transaction.entrySet()) {
+            File dir = e.getKey().getAbsoluteFile();
+            if (!moduleDir.equals(dir.getParentFile())) {
+                throw new IllegalArgumentException("文件夹不在模块文件夹下：" + dir);
+            }
+            for (DataRecord record : e.getValue()) {
+                out.writeUTF(dir.getName());
+                out.writeByte(record.isDelete() ? DataSegment.OP_DELETE : DataSegment.OP_PUT);
+                out.writeUTF(record.getName());
+                if (record.isDelete()) {
+                    out.writeInt(0);
+                } else {
+                    out.writeInt(record.getData().length);
+                    out.write(record.getData());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private Map<File, List<DataRecord>> decode(DataInputStream in) throws IOException {
+        Map<File, List<DataRecord>> transaction = new LinkedHashMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            File dir = new File(moduleDir, in.readUTF());
+            byte op = in.readByte();
+            String name = in.readUTF();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            DataRecord record = op == DataSegment.OP_DELETE ? DataRecord.delete(name) : new DataRecord(name, data);
+            transaction.computeIfAbsent(dir, k -> new ArrayList<>()).add(record);
+        }
+        return transaction;
+    }
+}
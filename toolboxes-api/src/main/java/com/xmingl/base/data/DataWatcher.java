@@ -0,0 +1,287 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于{@link WatchService}的数据变化监听，所有模块共用一个监听线程<br/>
+ * 监听模块文件夹（天文件夹与段文件的增删改）和已注册的天文件夹（文件的增删改），按天通知监听器<br/>
+ * 开始监听模块时注册最近{@link #RECENT_DAYS}天及之后已存在的天文件夹，之后新建的天文件夹在模块文件夹的创建事件中注册，
+ * 更早的天文件夹在读取时由{@link #watchDay(File, long)}注册，控制监听的文件夹数量<br/>
+ * 同时按天维护内存中的数据版本（{@link #version(File, long)}），作为ETag时不需要访问文件
+ *
+ * @author XMINGL
+ * @version 0.0.1 数据变化监听
+ */
+public class DataWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataWatcher.class);
+
+    /**
+     * 数据变化监听器
+     */
+    public interface Listener {
+
+        /**
+         * 某一天的数据发生变化
+         *
+         * @param epochDay epoch-day，事件丢失（OVERFLOW）时为{@link DateUtil#INVALID_EPOCH_DAY}，表示所有天都可能变化
+         */
+        void onChange(long epochDay);
+    }
+
+    /**
+     * 开始监听时注册的天文件夹范围：今天之前的天数
+     */
+    public static final int RECENT_DAYS = 366;
+
+    private static WatchService watchService;
+
+    /**
+     * 模块文件夹 -> 监听器
+     */
+    private static final Map<Path, List<Listener>> LISTENERS = new ConcurrentHashMap<>();
+
+    /**
+     * 已注册的文件夹：WatchKey -> 所属模块文件夹，天文件夹另记epoch-day
+     */
+    private static final Map<WatchKey, Registration> REGISTRATIONS = new ConcurrentHashMap<>();
+
+    private static final Map<Path, WatchKey> DAY_KEYS = new ConcurrentHashMap<>();
+
+    /**
+     * 模块文件夹 -> 数据版本
+     */
+    private static final Map<Path, Versions> VERSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * 进程启动时间，作为版本前缀，重启后之前的版本都失效
+     */
+    private static final String START = Long.toHexString(System.currentTimeMillis());
+
+    /**
+     * 监听模块的数据变化
+     *
+     * @param moduleDir 模块文件夹
+     * @param listener  监听器
+     * @throws IOException 异常
+     */
+    public static synchronized void watch(File moduleDir, Listener listener) throws IOException {
+        Path module = moduleDir.getAbsoluteFile().toPath();
+        List<Listener> listeners = LISTENERS.get(module);
+        if (listeners == null) {
+            Files.createDirectories(module);
+            WatchKey key = register(module);
+            REGISTRATIONS.put(key, new Registration(module, DateUtil.INVALID_EPOCH_DAY));
+            listeners = new CopyOnWriteArrayList<>();
+            VERSIONS.put(module, new Versions(DateUtil.getEpochDay(DateUtil.getNowDate()) - RECENT_DAYS));
+            LISTENERS.put(module, listeners);
+            watchRecentDays(module);
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * 注册最近的天文件夹
+     *
+     * @param module 模块文件夹
+     */
+    private static void watchRecentDays(Path module) {
+        String[] names = module.toFile().list();
+        if (names == null) {
+            return;
+        }
+        long from = DateUtil.getEpochDay(DateUtil.getNowDate()) - RECENT_DAYS;
+        for (String name : names) {
+            long epochDay = DateUtil.parseEpochDay(name);
+            if (epochDay != DateUtil.INVALID_EPOCH_DAY && epochDay >= from) {
+                watchDay(module, module.resolve(name), epochDay);
+            }
+        }
+    }
+
+    /**
+     * 获取某一天数据的版本，只读内存，不访问文件：由监听到的变化和{@link DataWriter}的写入递增
+     *
+     * @param moduleDir 模块文件夹
+     * @param epochDay  epoch-day
+     * @return 版本，模块未在监听或该天的文件夹未注册监听（无法发现文件的原地修改）时为null
+     */
+    public static String version(File moduleDir, long epochDay) {
+        Path module = moduleDir.getAbsoluteFile().toPath();
+        Versions versions = VERSIONS.get(module);
+        if (versions == null) {
+            return null;
+        }
+        if (epochDay < versions.recentFrom && !DAY_KEYS.containsKey(module.resolve(DateUtil.formatEpochDay(epochDay)))) {
+            return null;
+        }
+        Long day = versions.days.get(epochDay);
+        return START + "-" + Long.toHexString(versions.generation) + "-" + Long.toHexString(day == null ? 0 : day);
+    }
+
+    /**
+     * 某一天的数据已变化，递增其版本；写入方在写入完成后立即调用，不等监听事件到达
+     *
+     * @param moduleDir 模块文件夹
+     * @param epochDay  epoch-day，为{@link DateUtil#INVALID_EPOCH_DAY}时所有天的版本都变化
+     */
+    static void changed(File moduleDir, long epochDay) {
+        changed(moduleDir.getAbsoluteFile().toPath(), epochDay);
+    }
+
+    private static void changed(Path module, long epochDay) {
+        Versions versions = VERSIONS.get(module);
+        if (versions == null) {
+            return;
+        }
+        long sequence = versions.sequence.incrementAndGet();
+        if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+            versions.generation = sequence;
+        } else {
+            versions.days.put(epochDay, sequence);
+        }
+    }
+
+    /**
+     * 模块是否已在监听
+     *
+     * @param moduleDir 模块文件夹
+     * @return 是否已在监听
+     */
+    public static boolean isWatching(File moduleDir) {
+        return LISTENERS.containsKey(moduleDir.getAbsoluteFile().toPath());
+    }
+
+    /**
+     * 监听天文件夹内的文件变化，天文件夹不存在时只依赖模块文件夹的监听
+     *
+     * @param moduleDir 模块文件夹
+     * @param epochDay  epoch-day
+     */
+    public static void watchDay(File moduleDir, long epochDay) {
+        Path module = moduleDir.getAbsoluteFile().toPath();
+        watchDay(module, module.resolve(DateUtil.formatEpochDay(epochDay)), epochDay);
+    }
+
+    private static void watchDay(Path module, Path day, long epochDay) {
+        if (DAY_KEYS.containsKey(day) || !LISTENERS.containsKey(module) || !Files.isDirectory(day)) {
+            return;
+        }
+        synchronized (DataWatcher.class) {
+            if (DAY_KEYS.containsKey(day)) {
+                return;
+            }
+            try {
+                WatchKey key = register(day);
+                REGISTRATIONS.put(key, new Registration(module, epochDay));
+                DAY_KEYS.put(day, key);
+            } catch (IOException e) {
+                logger.warn("watch: {} , reason: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    private static WatchKey register(Path dir) throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(DataWatcher::run, "data-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private static void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Registration registration = REGISTRATIONS.get(key);
+            if (registration != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    dispatch(registration, event);
+                }
+            }
+            if (!key.reset()) {
+                // 文件夹被删除
+                REGISTRATIONS.remove(key);
+                DAY_KEYS.values().remove(key);
+            }
+        }
+    }
+
+    private static void dispatch(Registration registration, WatchEvent<?> event) {
+        long epochDay = registration.epochDay;
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            epochDay = DateUtil.INVALID_EPOCH_DAY;
+        } else if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+            // 模块文件夹下的天文件夹、段文件、段索引：取第一个'.'之前的部分
+            String name = event.context().toString();
+            int dot = name.indexOf('.');
+            epochDay = DateUtil.parseEpochDay(dot < 0 ? name : name.substring(0, dot));
+            if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+                return;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && dot < 0) {
+                // 新建的天文件夹，注册后再通知，注册前写入的文件由本次通知覆盖
+                watchDay(registration.module, registration.module.resolve(name), epochDay);
+            }
+        }
+        changed(registration.module, epochDay);
+        List<Listener> listeners = LISTENERS.get(registration.module);
+        if (listeners == null) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onChange(epochDay);
+            } catch (RuntimeException e) {
+                logger.error("watch listener: {} , reason: {}", registration.module, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 模块的数据版本：每天最后一次变化时的序号，事件丢失时代数更新，所有天的版本随之变化
+     */
+    private static final class Versions {
+        /**
+         * 开始监听时已注册的最早一天，更早的天只有注册后才有版本
+         */
+        final long recentFrom;
+        final AtomicLong sequence = new AtomicLong();
+        final Map<Long, Long> days = new ConcurrentHashMap<>();
+        volatile long generation;
+
+        Versions(long recentFrom) {
+            this.recentFrom = recentFrom;
+        }
+    }
+
+    private static final class Registration {
+        final Path module;
+        final long epochDay;
+
+        Registration(Path module, long epochDay) {
+            this.module = module;
+            this.epochDay = epochDay;
+        }
+    }
+}
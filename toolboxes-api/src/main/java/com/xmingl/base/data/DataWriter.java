@@ -0,0 +1,426 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台批量写入（write-behind）<br/>
+ * 写入请求（事务）进入队列，由写入线程成批取出：每个模块的事务先一次写入{@link DataWal}，
+ * 再按天文件夹分组，每组只向{@link DataSegment}追加一次（group commit），不再每条记录打开、写入、关闭一个文件；
+ * 写入线程提交一批期间到达的请求自然合并到下一批<br/>
+ * 段文件在检查点时才落盘，落盘后截断日志；同名的散文件在写入段后删除，避免旧文件覆盖段中的新数据<br/>
+ * 追加到段失败的记录保留在内存中重试，重试成功前不截断日志，事务要么全部生效后结束，要么由下次启动时重放补全
+ *
+ * @author XMINGL
+ * @version 0.0.1 批量写入
+ */
+public class DataWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataWriter.class);
+
+    /**
+     * 落盘策略
+     */
+    public enum Durability {
+        /**
+         * 每批写入日志后fsync，fsync完成才算写入成功
+         */
+        BATCH,
+        /**
+         * 写入后即算成功，每隔{@link #SYNC_INTERVAL_MILLIS}统一fsync日志，崩溃时最多丢失一个间隔的数据
+         */
+        INTERVAL,
+        /**
+         * 不主动fsync日志，由操作系统决定何时落盘
+         */
+        NONE
+    }
+
+    /**
+     * {@link Durability#INTERVAL}的fsync间隔
+     */
+    public static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    /**
+     * 日志超过此长度时做检查点
+     */
+    private static final long CHECKPOINT_BYTES = 4 * FileUtil.ONE_MB;
+
+    /**
+     * 距上次检查点超过此时间且有未落盘的段时做检查点
+     */
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 10 * 1000;
+
+    /**
+     * 一批最多的事务数
+     */
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * 队列容量，写满时写入方阻塞
+     */
+    private static final int QUEUE_SIZE = 16 * 1024;
+
+    private static final BlockingQueue<Pending> QUEUE = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+    /**
+     * 以下状态只在持有{@code DataWriter.class}锁时访问：已追加但尚未落盘的段、写入过的日志、尚未fsync的日志
+     */
+    private static final Set<DataSegment> DIRTY_SEGMENTS = new HashSet<>();
+    private static final Set<DataWal> WALS = new HashSet<>();
+    private static final Set<DataWal> UNSYNCED_WALS = new HashSet<>();
+
+    /**
+     * 已写入日志但追加到段失败的记录：文件夹 -> 记录（按写入顺序），每次维护时重试；
+     * 同一文件夹之后的记录排在其后，保证追加顺序；重试成功前不截断所在模块的日志
+     */
+    private static final Map<File, List<DataRecord>> FAILED = new LinkedHashMap<>();
+
+    /**
+     * 涉及{@link #FAILED}文件夹的事务，所有文件夹都追加成功后才结束
+     */
+    private static final List<Pending> WAITING = new ArrayList<>();
+
+    private static long lastSync = System.currentTimeMillis();
+    private static long lastCheckpoint = System.currentTimeMillis();
+
+    static {
+        Thread thread = new Thread(DataWriter::run, "data-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(DataWriter::drain, "data-writer-shutdown"));
+    }
+
+    private DataWriter() {
+    }
+
+    /**
+     * 提交一条记录
+     *
+     * @param dir        数据文件夹（一般为天文件夹）
+     * @param record     记录
+     * @param durability 落盘策略
+     * @return 写入完成（{@link Durability#BATCH}时为落盘完成）后结束，写入日志失败时异常结束；
+     * 日志已写入而追加到段失败时等待重试成功后结束
+     * @throws IOException 等待队列空间时被中断
+     */
+    public static CompletableFuture<Void> write(File dir, DataRecord record, Durability durability) throws IOException {
+        return write(Collections.singletonMap(dir, Collections.singletonList(record)), durability);
+    }
+
+    /**
+     * 提交一个事务，事务中的记录全部写入或（崩溃后）全部不写入
+     *
+     * @param records    数据文件夹 -> 记录，数据文件夹须在同一个模块文件夹下
+     * @param durability 落盘策略
+     * @return 写入完成（{@link Durability#BATCH}时为落盘完成）后结束，写入日志失败时异常结束；
+     * 日志已写入而追加到段失败时等待重试成功后结束
+     * @throws IOException 等待队列空间时被中断
+     */
+    public static CompletableFuture<Void> write(Map<File, List<DataRecord>> records, Durability durability) throws IOException {
+        Map<File, List<DataRecord>> transaction = new LinkedHashMap<>();
+        File moduleDir = null;
+        for (Map.Entry<File, List<DataRecord>> e : records.entrySet()) {
+            File dir = e.getKey().getAbsoluteFile();
+            if (moduleDir != null && !moduleDir.equals(dir.getParentFile())) {
+                throw new IllegalArgumentException("事务中的文件夹须在同一个模块文件夹下：" + dir);
+            }
+            moduleDir = dir.getParentFile();
+            transaction.put(dir, new ArrayList<>(e.getValue()));
+        }
+        Pending pending = new Pending(moduleDir, transaction, durability);
+        if (moduleDir == null) {
+            pending.future.complete(null);
+            return pending.future;
+        }
+        try {
+            QUEUE.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("写入数据被中断");
+        }
+        return pending.future;
+    }
+
+    /**
+     * 在写入线程提交之间执行的操作
+     */
+    interface Exclusive {
+        void run() throws IOException;
+    }
+
+    /**
+     * 持有写入锁执行操作，期间写入线程不会向任何段追加记录，用于归档等需要检查后删除段的操作
+     *
+     * @param exclusive 操作
+     * @throws IOException 操作的异常
+     */
+    static synchronized void exclusive(Exclusive exclusive) throws IOException {
+        exclusive.run();
+    }
+
+    private static void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Pending first = QUEUE.poll(SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    QUEUE.drainTo(batch, MAX_BATCH - 1);
+                    commit(batch);
+                    batch.clear();
+                }
+                maintain();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("data writer, reason: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 关闭前写完队列中剩余的事务并做检查点
+     */
+    private static synchronized void drain() {
+        List<Pending> batch = new ArrayList<>();
+        while (QUEUE.drainTo(batch, MAX_BATCH) > 0) {
+            commit(batch);
+            batch.clear();
+        }
+        retry();
+        checkpoint();
+    }
+
+    /**
+     * 提交一批事务：按模块写日志，再按文件夹追加段
+     */
+    private static synchronized void commit(List<Pending> batch) {
+        Map<File, List<Pending>> modules = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            modules.computeIfAbsent(pending.moduleDir, k -> new ArrayList<>()).add(pending);
+        }
+        List<Pending> logged = new ArrayList<>(batch.size());
+        for (Map.Entry<File, List<Pending>> module : modules.entrySet()) {
+            DataWal wal = DataWal.of(module.getKey());
+            List<Map<File, List<DataRecord>>> transactions = new ArrayList<>();
+            boolean sync = false;
+            boolean interval = false;
+            for (Pending pending : module.getValue()) {
+                transactions.add(pending.transaction);
+                sync |= pending.durability == Durability.BATCH;
+                interval |= pending.durability == Durability.INTERVAL;
+            }
+            try {
+                wal.append(transactions, sync);
+                WALS.add(wal);
+                if (!sync && interval) {
+                    UNSYNCED_WALS.add(wal);
+                }
+                logged.addAll(module.getValue());
+            } catch (IOException | RuntimeException e) {
+                logger.error("wal: {} , reason: {}", wal.getWalFile(), e.getMessage());
+                for (Pending pending : module.getValue()) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        }
+        Map<File, List<DataRecord>> dirs = new LinkedHashMap<>();
+        for (Pending pending : logged) {
+            for (Map.Entry<File, List<DataRecord>> e : pending.transaction.entrySet()) {
+                dirs.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).addAll(e.getValue());
+            }
+        }
+        for (Map.Entry<File, List<DataRecord>> dir : dirs.entrySet()) {
+            List<DataRecord> failed = FAILED.get(dir.getKey());
+            if (failed != null) {
+                // 之前的记录尚未追加成功，排在其后一起重试
+                failed.addAll(dir.getValue());
+            } else if (!apply(dir.getKey(), dir.getValue())) {
+                FAILED.put(dir.getKey(), new ArrayList<>(dir.getValue()));
+            }
+        }
+        for (Pending pending : logged) {
+            if (isApplied(pending)) {
+                pending.future.complete(null);
+            } else {
+                WAITING.add(pending);
+            }
+        }
+    }
+
+    /**
+     * 将一个文件夹的记录追加到段并删除同名散文件，之后立即更新数据量及其汇总和数据版本，不等查询时按修改时间发现
+     *
+     * @return 是否成功，失败时日志已写入，由重试或下次启动时重放补上
+     */
+    private static boolean apply(File dir, List<DataRecord> records) {
+        try {
+            DataSegment segment = DataSegment.of(dir);
+            segment.append(records, false);
+            DIRTY_SEGMENTS.add(segment);
+            deleteShadowed(dir, records);
+        } catch (IOException | RuntimeException e) {
+            logger.error("write: {} , reason: {}", dir, e.getMessage());
+            return false;
+        }
+        long epochDay = DateUtil.parseEpochDay(dir.getName());
+        if (epochDay != DateUtil.INVALID_EPOCH_DAY) {
+            DataCountIndex.of(dir.getParentFile()).update(epochDay);
+            DataWatcher.changed(dir.getParentFile(), epochDay);
+        }
+        return true;
+    }
+
+    private static boolean isApplied(Pending pending) {
+        for (File dir : pending.transaction.keySet()) {
+            if (FAILED.containsKey(dir)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 重试追加失败的记录，结束所有文件夹都已追加的事务
+     */
+    private static void retry() {
+        if (FAILED.isEmpty()) {
+            return;
+        }
+        FAILED.entrySet().removeIf(dir -> apply(dir.getKey(), dir.getValue()));
+        Iterator<Pending> waiting = WAITING.iterator();
+        while (waiting.hasNext()) {
+            Pending pending = waiting.next();
+            if (isApplied(pending)) {
+                pending.future.complete(null);
+                waiting.remove();
+            }
+        }
+    }
+
+    /**
+     * 模块是否有追加失败、尚未重试成功的记录，有则日志不能截断
+     */
+    private static boolean hasFailed(DataWal wal) {
+        for (File dir : FAILED.keySet()) {
+            if (DataWal.of(dir.getParentFile()) == wal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除与写入记录同名的散文件
+     */
+    static void deleteShadowed(File dir, List<DataRecord> records) throws IOException {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        for (DataRecord record : records) {
+            File file = new File(dir, record.getName());
+            if (file.isFile()) {
+                FileUtil.forceDelete(file);
+            }
+        }
+    }
+
+    /**
+     * 按间隔fsync日志，日志过长或间隔到达时做检查点
+     */
+    private static synchronized void maintain() {
+        retry();
+        long now = System.currentTimeMillis();
+        if (now - lastSync >= SYNC_INTERVAL_MILLIS) {
+            for (DataWal wal : UNSYNCED_WALS) {
+                try {
+                    wal.force();
+                } catch (IOException e) {
+                    logger.error("sync: {} , reason: {}", wal.getWalFile(), e.getMessage());
+                }
+            }
+            UNSYNCED_WALS.clear();
+            lastSync = now;
+        }
+        boolean full = false;
+        for (DataWal wal : WALS) {
+            try {
+                full |= wal.length() >= CHECKPOINT_BYTES;
+            } catch (IOException e) {
+                logger.error("wal: {} , reason: {}", wal.getWalFile(), e.getMessage());
+            }
+        }
+        if (full || (!DIRTY_SEGMENTS.isEmpty() && now - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * 段落盘后压缩失效记录过多的段并截断日志；有段落盘失败时保留日志，下次启动时重放；
+     * 有记录追加失败的模块不截断日志，直到重试成功
+     */
+    private static synchronized void checkpoint() {
+        boolean synced = true;
+        for (DataSegment segment : DIRTY_SEGMENTS) {
+            try {
+                segment.force();
+            } catch (IOException e) {
+                logger.error("sync: {} , reason: {}", segment.getSegmentFile(), e.getMessage());
+                synced = false;
+            }
+        }
+        if (!synced) {
+            return;
+        }
+        for (DataSegment segment : DIRTY_SEGMENTS) {
+            // 段已落盘，压缩失败时原段文件不变，不影响截断日志
+            try {
+                if (segment.needsCompaction()) {
+                    segment.compact();
+                }
+            } catch (IOException e) {
+                logger.error("compact: {} , reason: {}", segment.getSegmentFile(), e.getMessage());
+            }
+        }
+        DIRTY_SEGMENTS.clear();
+        Iterator<DataWal> wals = WALS.iterator();
+        while (wals.hasNext()) {
+            DataWal wal = wals.next();
+            if (hasFailed(wal)) {
+                continue;
+            }
+            try {
+                wal.checkpoint();
+            } catch (IOException e) {
+                logger.error("checkpoint: {} , reason: {}", wal.getWalFile(), e.getMessage());
+            }
+            wals.remove();
+            UNSYNCED_WALS.remove(wal);
+        }
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    private static final class Pending {
+        final File moduleDir;
+        final Map<File, List<DataRecord>> transaction;
+        final Durability durability;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(File moduleDir, Map<File, List<DataRecord>> transaction, Durability durability) {
+            this.moduleDir = moduleDir;
+            this.transaction = transaction;
+            this.durability = durability;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.xmingl.base.data;
+
+/**
+ * 一年的数据量汇总
+ *
+ * @author XMINGL
+ * @version 0.0.1 年数据量汇总
+ */
+public class DataYearCounts {
+
+    private final int year;
+
+    /**
+     * 每天的数据量，下标为一年中的第几天（从0开始）
+     */
+    private final int[] days;
+
+    /**
+     * 每月的数据量，下标为月份减1
+     */
+    private final int[] months;
+
+    private final int total;
+
+    public DataYearCounts(int year, int[] days, int[] months, int total) {
+        this.year = year;
+        this.days = days;
+        this.months = months;
+        this.total = total;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int[] getDays() {
+        return days;
+    }
+
+    public int[] getMonths() {
+        return months;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
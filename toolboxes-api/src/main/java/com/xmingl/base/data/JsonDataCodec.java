@@ -0,0 +1,45 @@
+package com.xmingl.base.data;
+
+import com.alibaba.fastjson.JSON;
+
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON编码，数据文件的默认编码
+ *
+ * @author XMINGL
+ * @version 0.0.1 JSON编码
+ */
+public class JsonDataCodec implements DataCodec {
+
+    /**
+     * 与读取文件字符串时一致，非法字节替换而不报错
+     */
+    private static final ThreadLocal<CharsetDecoder> UTF_8_DECODER = ThreadLocal.withInitial(() ->
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    /**
+     * 从UTF-8字节解码，先解码到fastjson线程复用的字符数组，不再先把整个文件读成字符串
+     */
+    @Override
+    public <T> T decode(byte[] data, int offset, int length, Class<T> clazz) {
+        return JSON.parseObject(data, offset, length, UTF_8_DECODER.get(), clazz);
+    }
+
+    /**
+     * 其他编码都无法识别的数据按JSON处理
+     */
+    @Override
+    public boolean accepts(byte[] data, int offset, int length) {
+        return true;
+    }
+}
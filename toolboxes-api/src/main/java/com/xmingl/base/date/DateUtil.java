@@ -7,6 +7,10 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -897,5 +901,64 @@ public class DateUtil extends org.apache.commons.lang.time.DateUtils {
         return date;
     }
 
+    /**
+     * 非法的epoch-day，用于标识无法解析的日期
+     */
+    public static final long INVALID_EPOCH_DAY = Long.MIN_VALUE;
+
+    /**
+     * 获取日期对应的epoch-day（系统时区，1970-01-01为第0天）
+     *
+     * @param date 日期
+     * @return epoch-day
+     */
+    public static long getEpochDay(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * 获取epoch-day当天零点（系统时区）的日期
+     *
+     * @param epochDay epoch-day
+     * @return 日期
+     */
+    public static Date getDateOfEpochDay(long epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * 将epoch-day格式化为yyyyMMdd
+     *
+     * @param epochDay epoch-day
+     * @return yyyyMMdd
+     */
+    public static String formatEpochDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    /**
+     * 将yyyyMMdd解析为epoch-day，不抛出异常
+     *
+     * @param shortDate yyyyMMdd
+     * @return epoch-day，无法解析时返回{@link #INVALID_EPOCH_DAY}
+     */
+    public static long parseEpochDay(String shortDate) {
+        if (shortDate == null || shortDate.length() != shortFormat.length()) {
+            return INVALID_EPOCH_DAY;
+        }
+        int value = 0;
+        for (int i = 0; i < shortDate.length(); i++) {
+            char c = shortDate.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID_EPOCH_DAY;
+            }
+            value = value * 10 + (c - '0');
+        }
+        try {
+            return LocalDate.of(value / 10000, value / 100 % 100, value % 100).toEpochDay();
+        } catch (DateTimeException e) {
+            return INVALID_EPOCH_DAY;
+        }
+    }
 
 }
@@ -563,10 +563,12 @@ public class FileUtil {
             long size = input.size();
             long pos = 0;
             long count = 0;
+            Object event = IOEvents.begin(IOEvents.FILE_COPY);
             while (pos < size) {
                 count = Math.min(size - pos, FILE_COPY_BUFFER_SIZE);
                 pos += output.transferFrom(input, pos, count);
             }
+            IOEvents.commitFileCopy(event, srcFile, destFile, pos);
         } finally {
             IOUtil.closeQuietly(output);
             IOUtil.closeQuietly(fos);
@@ -896,8 +898,12 @@ public class FileUtil {
     public static String readFileToString(File file, Charset encoding) throws IOException {
         InputStream in = null;
         try {
+            Object event = IOEvents.begin(IOEvents.FILE_READ);
             in = openInputStream(file);
-            return IOUtil.toString(in, Charsets.toCharset(encoding));
+            // 按读到的字节数记录事件，不再读取文件长度
+            byte[] data = IOUtil.toByteArray(in);
+            IOEvents.commitFileRead(event, file, data.length);
+            return new String(data, Charsets.toCharset(encoding));
         } finally {
             IOUtil.closeQuietly(in);
         }
@@ -0,0 +1,127 @@
+package com.xmingl.base.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * 文件读写与数据解码的JFR事件<br/>
+ * 运行时有JFR（JDK 11+或8u262+）时发出事件，持续记录中可以按文件、阶段定位耗时；最低运行环境仍为JRE 8，
+ * 更早的JRE没有{@code jdk.jfr}，{@link IOFlightEvents}不会被加载（加载失败也只关闭事件），所有方法为空操作。
+ * 事件未被记录启用时{@link #begin(int)}返回null，不创建对象。用法：
+ * <pre>
+ * Object event = IOEvents.begin(IOEvents.FILE_READ);
+ * ...
+ * IOEvents.commitFileRead(event, file, bytes);
+ * </pre>
+ *
+ * @author XMINGL
+ * @version 0.0.1 JFR事件
+ */
+public final class IOEvents {
+
+    private static final Logger logger = LoggerFactory.getLogger(IOEvents.class);
+
+    /**
+     * 读取整个文件
+     */
+    public static final int FILE_READ = 0;
+
+    /**
+     * 拷贝文件
+     */
+    public static final int FILE_COPY = 1;
+
+    /**
+     * 拷贝流
+     */
+    public static final int STREAM_COPY = 2;
+
+    /**
+     * 读取并解码一批数据（一页、一个分片）
+     */
+    public static final int DATA_DECODE = 3;
+
+    /**
+     * 运行时是否有JFR
+     */
+    public static final boolean AVAILABLE = available();
+
+    private IOEvents() {
+    }
+
+    /**
+     * 开始事件
+     *
+     * @param type 事件类型
+     * @return 事件，JFR不可用或事件未启用时为null
+     */
+    public static Object begin(int type) {
+        return AVAILABLE ? IOFlightEvents.begin(type) : null;
+    }
+
+    /**
+     * 结束读取文件事件
+     *
+     * @param event {@link #begin(int)}的返回值
+     * @param file  文件
+     * @param bytes 字节数
+     */
+    public static void commitFileRead(Object event, File file, long bytes) {
+        if (event != null) {
+            IOFlightEvents.commitFileRead(event, file, bytes);
+        }
+    }
+
+    /**
+     * 结束拷贝文件事件
+     *
+     * @param event       {@link #begin(int)}的返回值
+     * @param source      源文件
+     * @param destination 目标文件
+     * @param bytes       字节数
+     */
+    public static void commitFileCopy(Object event, File source, File destination, long bytes) {
+        if (event != null) {
+            IOFlightEvents.commitFileCopy(event, source, destination, bytes);
+        }
+    }
+
+    /**
+     * 结束拷贝流事件
+     *
+     * @param event {@link #begin(int)}的返回值
+     * @param bytes 字节数
+     */
+    public static void commitStreamCopy(Object event, long bytes) {
+        if (event != null) {
+            IOFlightEvents.commitStreamCopy(event, bytes);
+        }
+    }
+
+    /**
+     * 结束解码事件
+     *
+     * @param event       {@link #begin(int)}的返回值
+     * @param dir         数据所在文件夹
+     * @param count       数据条数
+     * @param bytes       字节数
+     * @param decodeNanos 其中解码的耗时（纳秒）
+     */
+    public static void commitDataDecode(Object event, String dir, int count, long bytes, long decodeNanos) {
+        if (event != null) {
+            IOFlightEvents.commitDataDecode(event, dir, count, bytes, decodeNanos);
+        }
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event", false, IOEvents.class.getClassLoader());
+            return IOFlightEvents.isAvailable();
+        } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+            logger.info("jfr events disabled, reason: {}", e.toString());
+            return false;
+        }
+    }
+}
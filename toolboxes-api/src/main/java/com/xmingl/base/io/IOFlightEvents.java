@@ -0,0 +1,175 @@
+package com.xmingl.base.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+import java.io.File;
+
+/**
+ * JFR事件定义<br/>
+ * 只能通过{@link IOEvents}使用，运行时没有JFR时该类不会被加载
+ *
+ * @author XMINGL
+ * @version 0.0.1 JFR事件
+ */
+final class IOFlightEvents {
+
+    private static final EventType FILE_READ = EventType.getEventType(FileRead.class);
+    private static final EventType FILE_COPY = EventType.getEventType(FileCopy.class);
+    private static final EventType STREAM_COPY = EventType.getEventType(StreamCopy.class);
+    private static final EventType DATA_DECODE = EventType.getEventType(DataDecode.class);
+
+    private IOFlightEvents() {
+    }
+
+    static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    /**
+     * 开始事件，事件类型未被任何记录启用时不创建对象
+     *
+     * @param type 事件类型，见{@link IOEvents}
+     * @return 事件，未启用时为null
+     */
+    static Object begin(int type) {
+        Event event;
+        switch (type) {
+            case IOEvents.FILE_READ:
+                event = FILE_READ.isEnabled() ? new FileRead() : null;
+                break;
+            case IOEvents.FILE_COPY:
+                event = FILE_COPY.isEnabled() ? new FileCopy() : null;
+                break;
+            case IOEvents.STREAM_COPY:
+                event = STREAM_COPY.isEnabled() ? new StreamCopy() : null;
+                break;
+            case IOEvents.DATA_DECODE:
+                event = DATA_DECODE.isEnabled() ? new DataDecode() : null;
+                break;
+            default:
+                throw new IllegalArgumentException("未知的事件类型：" + type);
+        }
+        if (event != null) {
+            event.begin();
+        }
+        return event;
+    }
+
+    static void commitFileRead(Object event, File file, long bytes) {
+        FileRead e = (FileRead) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.path = file.getPath();
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    static void commitFileCopy(Object event, File source, File destination, long bytes) {
+        FileCopy e = (FileCopy) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.source = source.getPath();
+            e.destination = destination.getPath();
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    static void commitStreamCopy(Object event, long bytes) {
+        StreamCopy e = (StreamCopy) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    static void commitDataDecode(Object event, String dir, int count, long bytes, long decodeNanos) {
+        DataDecode e = (DataDecode) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.path = dir;
+            e.count = count;
+            e.bytes = bytes;
+            e.decodeTime = decodeNanos;
+            e.commit();
+        }
+    }
+
+    @Name("com.xmingl.FileRead")
+    @Label("File Read")
+    @Category({"Toolboxes", "I/O"})
+    @Description("读取整个文件")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class FileRead extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.xmingl.FileCopy")
+    @Label("File Copy")
+    @Category({"Toolboxes", "I/O"})
+    @Description("拷贝文件")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class FileCopy extends Event {
+        @Label("Source")
+        String source;
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.xmingl.StreamCopy")
+    @Label("Stream Copy")
+    @Category({"Toolboxes", "I/O"})
+    @Description("拷贝流")
+    @Threshold("1 ms")
+    static class StreamCopy extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.xmingl.DataDecode")
+    @Label("Data Decode")
+    @Category({"Toolboxes", "Data"})
+    @Description("读取并解码一批数据，每页或每个分片一个事件")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class DataDecode extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Count")
+        int count;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Decode Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long decodeTime;
+    }
+}
@@ -219,12 +219,14 @@ public class IOUtil {
      */
     public static long copyLarge(InputStream input, OutputStream output, byte[] buffer)
             throws IOException {
+        Object event = IOEvents.begin(IOEvents.STREAM_COPY);
         long count = 0;
         int n = 0;
         while (EOF != (n = input.read(buffer))) {
             output.write(buffer, 0, n);
             count += n;
         }
+        IOEvents.commitStreamCopy(event, count);
         return count;
     }
 
@@ -260,6 +262,7 @@ public class IOUtil {
         if (length == 0) {
             return 0;
         }
+        Object event = IOEvents.begin(IOEvents.STREAM_COPY);
         final int bufferLength = buffer.length;
         int bytesToRead = bufferLength;
         if (length > 0 && length < bufferLength) {
@@ -275,6 +278,7 @@ public class IOUtil {
                 bytesToRead = (int) Math.min(length - totalRead, bufferLength);
             }
         }
+        IOEvents.commitStreamCopy(event, totalRead);
         return totalRead;
     }
 
@@ -692,6 +696,30 @@ public class IOUtil {
         return data;
     }
 
+    /**
+     * 读取到数组中，直到读满或流结束
+     * @param input 输入流
+     * @param buffer 目标数组
+     * @param offset 起始位置
+     * @param length 最大读取长度
+     * @return 实际读取长度
+     * @throws IOException 异常
+     */
+    public static int read(InputStream input, byte[] buffer, int offset, int length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative: " + length);
+        }
+        int remaining = length;
+        while (remaining > 0) {
+            int count = input.read(buffer, offset + length - remaining, remaining);
+            if (EOF == count) {
+                break;
+            }
+            remaining -= count;
+        }
+        return length - remaining;
+    }
+
     public static byte[] toByteArray(Reader input) throws IOException {
         return toByteArray(input, Charset.defaultCharset());
     }
@@ -0,0 +1,238 @@
+package com.xmingl.base.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 带频次的前缀树，用于输入补全<br/>
+ * 节点保存在基本类型数组中：第一个子节点、下一个兄弟节点、频次、子树最大频次；
+ * (父节点, 字符) -> 子节点使用开放寻址表，查找不需要遍历兄弟节点<br/>
+ * 补全时从前缀节点按子树最大频次优先展开，只访问结果附近的节点。
+ * 键不区分大小写，返回最近一次加入时的原文；频次减到0的节点保留，重建时清除
+ *
+ * @author XMINGL
+ * @version 0.0.1 前缀树
+ */
+public class PrefixTrie {
+
+    private static final long EMPTY = -1L;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] firstChild = new int[256];
+    private int[] nextSibling = new int[256];
+    private int[] counts = new int[256];
+    private int[] best = new int[256];
+    private String[] values = new String[256];
+    private int size;
+
+    /**
+     * (父节点 << 16 | 字符) -> 子节点
+     */
+    private long[] edgeKeys;
+    private int[] edgeValues;
+    private int edgeCount;
+
+    private int distinct;
+
+    public PrefixTrie() {
+        allocateEdges(256);
+        newNode();
+    }
+
+    /**
+     * 不同文本的数量
+     *
+     * @return 频次大于0的文本数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return distinct;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 增加或减少文本的频次
+     *
+     * @param text  文本，首尾空白忽略
+     * @param delta 变化量
+     */
+    public void add(String text, int delta) {
+        String key = normalize(text);
+        if (key.isEmpty() || delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int[] path = new int[key.length() + 1];
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                int child = child(node, key.charAt(i));
+                if (child < 0) {
+                    if (delta < 0) {
+                        return;
+                    }
+                    child = addChild(node, key.charAt(i));
+                }
+                path[i] = node;
+                node = child;
+            }
+            path[key.length()] = node;
+            int before = counts[node];
+            counts[node] = Math.max(0, before + delta);
+            if (before == 0 && counts[node] > 0) {
+                distinct++;
+            } else if (before > 0 && counts[node] == 0) {
+                distinct--;
+            }
+            if (delta > 0) {
+                values[node] = text.trim();
+                for (int n : path) {
+                    best[n] = Math.max(best[n], counts[node]);
+                }
+            } else {
+                for (int i = path.length - 1; i >= 0; i--) {
+                    best[path[i]] = subtreeBest(path[i]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按前缀补全
+     *
+     * @param prefix 前缀，不区分大小写，为空时返回频次最高的文本
+     * @param limit  最多返回的数量
+     * @return 按频次从高到低排序的文本
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<String> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            int node = 0;
+            for (int i = 0; i < key.length() && node >= 0; i++) {
+                node = child(node, key.charAt(i));
+            }
+            if (node < 0 || best[node] == 0) {
+                return result;
+            }
+            // 正数为待展开的节点，负数（~节点）为待输出的文本，按频次从高到低取出
+            PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(b[0], a[0]));
+            queue.add(new long[]{best[node], node});
+            while (!queue.isEmpty() && result.size() < limit) {
+                long[] entry = queue.poll();
+                int n = (int) entry[1];
+                if (n < 0) {
+                    result.add(values[~n]);
+                    continue;
+                }
+                if (counts[n] > 0) {
+                    queue.add(new long[]{counts[n], ~n});
+                }
+                for (int c = firstChild[n]; c > 0; c = nextSibling[c]) {
+                    if (best[c] > 0) {
+                        queue.add(new long[]{best[c], c});
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private int subtreeBest(int node) {
+        int max = counts[node];
+        for (int c = firstChild[node]; c > 0; c = nextSibling[c]) {
+            max = Math.max(max, best[c]);
+        }
+        return max;
+    }
+
+    private int newNode() {
+        if (size == firstChild.length) {
+            int capacity = size * 2;
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            best = Arrays.copyOf(best, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        return size++;
+    }
+
+    private int addChild(int parent, char label) {
+        int child = newNode();
+        nextSibling[child] = firstChild[parent];
+        firstChild[parent] = child;
+        if ((edgeCount + 1) * 2 > edgeKeys.length) {
+            long[] oldKeys = edgeKeys;
+            int[] oldValues = edgeValues;
+            allocateEdges(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    putEdge(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        putEdge(edgeKey(parent, label), child);
+        return child;
+    }
+
+    private int child(int parent, char label) {
+        long key = edgeKey(parent, label);
+        int mask = edgeKeys.length - 1;
+        for (int i = hash(key, mask); ; i = (i + 1) & mask) {
+            if (edgeKeys[i] == key) {
+                return edgeValues[i];
+            }
+            if (edgeKeys[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void putEdge(long key, int child) {
+        int mask = edgeKeys.length - 1;
+        int i = hash(key, mask);
+        while (edgeKeys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        edgeKeys[i] = key;
+        edgeValues[i] = child;
+        edgeCount++;
+    }
+
+    private void allocateEdges(int capacity) {
+        edgeKeys = new long[capacity];
+        Arrays.fill(edgeKeys, EMPTY);
+        edgeValues = new int[capacity];
+        edgeCount = 0;
+    }
+
+    private static long edgeKey(int parent, char label) {
+        return ((long) parent << 16) | label;
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
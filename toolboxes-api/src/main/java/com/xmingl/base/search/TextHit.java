@@ -0,0 +1,41 @@
+package com.xmingl.base.search;
+
+/**
+ * 搜索结果：文档所在的天、名称、文本与得分
+ *
+ * @author XMINGL
+ * @version 0.0.1 搜索结果
+ */
+public class TextHit {
+
+    private final long epochDay;
+
+    private final String name;
+
+    private final String text;
+
+    private final float score;
+
+    public TextHit(long epochDay, String name, String text, float score) {
+        this.epochDay = epochDay;
+        this.name = name;
+        this.text = text;
+        this.score = score;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
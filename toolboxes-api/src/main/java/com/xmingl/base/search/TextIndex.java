@@ -0,0 +1,507 @@
+package com.xmingl.base.search;
+
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.io.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按天增量维护的倒排索引<br/>
+ * 文档为某一天的一条数据（天、名称、文本），以天为单位整体替换；每天记录建立索引时数据的修改标记，
+ * 标记未变化的天无需重新索引<br/>
+ * 倒排表为按文档号递增的数组，删除的文档先标记，删除过多时压缩；
+ * 保存到磁盘时包含文档表与倒排表，启动时直接加载，不需要重新分词<br/>
+ * 打分使用BM25，并按命中的查询词比例加权
+ *
+ * @author XMINGL
+ * @version 0.0.1 倒排索引
+ */
+public class TextIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextIndex.class);
+
+    private static final int MAGIC = 0x58544958;
+
+    private static final int VERSION = 1;
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    /**
+     * 删除的文档超过此数量且超过一半时压缩
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] docDays = new long[64];
+    private String[] docNames = new String[64];
+    private String[] docTexts = new String[64];
+    private int[] docLengths = new int[64];
+    private int docCount;
+
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    private long totalLength;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /**
+     * epoch-day -> 文档号
+     */
+    private final Map<Long, int[]> dayDocs = new HashMap<>();
+
+    /**
+     * epoch-day -> 建立索引时的修改标记
+     */
+    private final Map<Long, Long> dayStamps = new HashMap<>();
+
+    /**
+     * 某一天建立索引时的修改标记
+     *
+     * @param epochDay epoch-day
+     * @return 修改标记，未建立索引时为null
+     */
+    public Long stamp(long epochDay) {
+        lock.readLock().lock();
+        try {
+            return dayStamps.get(epochDay);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已建立索引的天
+     *
+     * @return epoch-day
+     */
+    public Set<Long> days() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(dayStamps.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 某一天文档的文本
+     *
+     * @param epochDay epoch-day
+     * @return 文本，未建立索引时为空
+     */
+    public List<String> texts(long epochDay) {
+        lock.readLock().lock();
+        try {
+            List<String> texts = new ArrayList<>();
+            int[] ids = dayDocs.get(epochDay);
+            if (ids != null) {
+                for (int id : ids) {
+                    texts.add(docTexts[id]);
+                }
+            }
+            return texts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 全部有效文档的文本
+     *
+     * @return 文本
+     */
+    public List<String> texts() {
+        lock.readLock().lock();
+        try {
+            List<String> texts = new ArrayList<>(docCount - deletedCount);
+            for (int i = 0; i < docCount; i++) {
+                if (!deleted.get(i)) {
+                    texts.add(docTexts[i]);
+                }
+            }
+            return texts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效文档数量
+     *
+     * @return 文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 替换某一天的全部文档
+     *
+     * @param epochDay epoch-day
+     * @param stamp    数据的修改标记
+     * @param docs     名称 -> 文本
+     */
+    public void replaceDay(long epochDay, long stamp, Map<String, String> docs) {
+        lock.writeLock().lock();
+        try {
+            deleteDay(epochDay);
+            int[] ids = new int[docs.size()];
+            int i = 0;
+            for (Map.Entry<String, String> doc : docs.entrySet()) {
+                ids[i++] = add(epochDay, doc.getKey(), doc.getValue());
+            }
+            dayDocs.put(epochDay, ids);
+            dayStamps.put(epochDay, stamp);
+            if (deletedCount > COMPACT_THRESHOLD && deletedCount * 2 > docCount) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除某一天的全部文档
+     *
+     * @param epochDay epoch-day
+     */
+    public void removeDay(long epochDay) {
+        lock.writeLock().lock();
+        try {
+            deleteDay(epochDay);
+            dayStamps.remove(epochDay);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索
+     *
+     * @param query 查询
+     * @param limit 最多返回的数量
+     * @return 按得分从高到低排序，得分相同时日期新的在前
+     */
+    public List<TextHit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(TextTokenizer.tokenizeQuery(query));
+        List<TextHit> hits = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) {
+            return hits;
+        }
+        lock.readLock().lock();
+        try {
+            int live = docCount - deletedCount;
+            if (live == 0) {
+                return hits;
+            }
+            float avgLength = (float) totalLength / live;
+            float[] scores = new float[docCount];
+            int[] matched = new int[docCount];
+            int[] touched = new int[docCount];
+            int touchedCount = 0;
+            for (String term : terms) {
+                Postings p = postings.get(term);
+                if (p == null) {
+                    continue;
+                }
+                int df = p.liveDocs(deleted);
+                float idf = (float) Math.log(1 + (live - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < p.size; ) {
+                    int doc = p.docs[i];
+                    int tf = 0;
+                    while (i < p.size && p.docs[i] == doc) {
+                        tf++;
+                        i++;
+                    }
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    if (matched[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    matched[doc]++;
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLengths[doc] / avgLength));
+                }
+            }
+            PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, (a, b) -> compare(scores, a, b));
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                scores[doc] *= (float) matched[doc] / terms.size();
+                top.add(doc);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            while (!top.isEmpty()) {
+                int doc = top.poll();
+                hits.add(new TextHit(docDays[doc], docNames[doc], docTexts[doc], scores[doc]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    private int compare(float[] scores, int a, int b) {
+        int c = Float.compare(scores[a], scores[b]);
+        return c != 0 ? c : Long.compare(docDays[a], docDays[b]);
+    }
+
+    /**
+     * 保存到文件，先压缩，写临时文件后原子替换
+     *
+     * @param file 索引文件
+     * @throws IOException 异常
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        lock.writeLock().lock();
+        try {
+            compact();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(FileUtil.openOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dayStamps.size());
+                for (Map.Entry<Long, Long> e : dayStamps.entrySet()) {
+                    out.writeLong(e.getKey());
+                    out.writeLong(e.getValue());
+                }
+                out.writeInt(docCount);
+                for (int i = 0; i < docCount; i++) {
+                    out.writeLong(docDays[i]);
+                    out.writeUTF(docNames[i]);
+                    out.writeUTF(docTexts[i] == null ? "" : docTexts[i]);
+                    out.writeInt(docLengths[i]);
+                }
+                out.writeInt(postings.size());
+                for (Map.Entry<String, Postings> e : postings.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    Postings p = e.getValue();
+                    out.writeInt(p.size);
+                    int last = 0;
+                    for (int i = 0; i < p.size; i++) {
+                        writeVarInt(out, p.docs[i] - last);
+                        last = p.docs[i];
+                    }
+                }
+            } finally {
+                IOUtil.closeQuietly(out);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从文件加载，文件不存在或损坏时返回空索引
+     *
+     * @param file 索引文件
+     * @return 索引
+     */
+    public static TextIndex load(File file) {
+        TextIndex index = new TextIndex();
+        if (!file.isFile()) {
+            return index;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(FileUtil.openInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("索引文件格式错误");
+            }
+            int days = in.readInt();
+            for (int i = 0; i < days; i++) {
+                index.dayStamps.put(in.readLong(), in.readLong());
+            }
+            int docs = in.readInt();
+            Map<Long, List<Integer>> dayDocs = new HashMap<>();
+            for (int i = 0; i < docs; i++) {
+                long epochDay = in.readLong();
+                String name = in.readUTF();
+                String text = in.readUTF();
+                int doc = index.newDoc(epochDay, name, text, in.readInt());
+                dayDocs.computeIfAbsent(epochDay, k -> new ArrayList<>()).add(doc);
+            }
+            for (Map.Entry<Long, List<Integer>> e : dayDocs.entrySet()) {
+                index.dayDocs.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                String term = in.readUTF();
+                int size = in.readInt();
+                Postings p = new Postings(Math.max(1, size));
+                int last = 0;
+                for (int j = 0; j < size; j++) {
+                    last += readVarInt(in);
+                    p.add(last);
+                }
+                index.postings.put(term, p);
+            }
+            return index;
+        } catch (IOException e) {
+            logger.error("text index: {} , reason: {}", file, e.getMessage());
+            return new TextIndex();
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private void deleteDay(long epochDay) {
+        int[] ids = dayDocs.remove(epochDay);
+        if (ids == null) {
+            return;
+        }
+        for (int id : ids) {
+            deleted.set(id);
+            deletedCount++;
+            totalLength -= docLengths[id];
+        }
+    }
+
+    private int add(long epochDay, String name, String text) {
+        List<String> tokens = TextTokenizer.tokenize(text);
+        int doc = newDoc(epochDay, name, text, tokens.size());
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, k -> new Postings(4)).add(doc);
+        }
+        return doc;
+    }
+
+    private int newDoc(long epochDay, String name, String text, int length) {
+        if (docCount == docDays.length) {
+            int capacity = docCount * 2;
+            docDays = Arrays.copyOf(docDays, capacity);
+            docNames = Arrays.copyOf(docNames, capacity);
+            docTexts = Arrays.copyOf(docTexts, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+        }
+        int doc = docCount++;
+        docDays[doc] = epochDay;
+        docNames[doc] = name;
+        docTexts[doc] = text;
+        docLengths[doc] = length;
+        totalLength += length;
+        return doc;
+    }
+
+    /**
+     * 去掉删除的文档并重新编号
+     */
+    private void compact() {
+        if (deletedCount == 0) {
+            return;
+        }
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int i = 0; i < docCount; i++) {
+            if (deleted.get(i)) {
+                remap[i] = -1;
+            } else {
+                remap[i] = next;
+                docDays[next] = docDays[i];
+                docNames[next] = docNames[i];
+                docTexts[next] = docTexts[i];
+                docLengths[next] = docLengths[i];
+                next++;
+            }
+        }
+        Arrays.fill(docNames, next, docCount, null);
+        Arrays.fill(docTexts, next, docCount, null);
+        docCount = next;
+        Iterator<Postings> it = postings.values().iterator();
+        while (it.hasNext()) {
+            Postings p = it.next();
+            int size = 0;
+            for (int i = 0; i < p.size; i++) {
+                if (remap[p.docs[i]] >= 0) {
+                    p.docs[size++] = remap[p.docs[i]];
+                }
+            }
+            p.size = size;
+            if (size == 0) {
+                it.remove();
+            }
+        }
+        for (Map.Entry<Long, int[]> e : dayDocs.entrySet()) {
+            int[] ids = e.getValue();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = remap[ids[i]];
+            }
+        }
+        deleted = new BitSet();
+        deletedCount = 0;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint过长");
+    }
+
+    /**
+     * 倒排表：每出现一次记录一次文档号，文档号递增
+     */
+    private static final class Postings {
+        int[] docs;
+        int size;
+
+        Postings(int capacity) {
+            docs = new int[capacity];
+        }
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        /**
+         * 包含该词的有效文档数
+         */
+        int liveDocs(BitSet deleted) {
+            int df = 0;
+            int last = -1;
+            for (int i = 0; i < size; i++) {
+                if (docs[i] != last) {
+                    last = docs[i];
+                    if (!deleted.get(last)) {
+                        df++;
+                    }
+                }
+            }
+            return df;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.xmingl.base.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 面向中文的分词<br/>
+ * 中日韩文字不依赖词典：索引时每个字及相邻两字（bigram）都作为词，查询时连续两个及以上的字只用bigram，单字用单字；
+ * 其他字母与数字按连续的单词切分并转小写，其余字符作为分隔符
+ *
+ * @author XMINGL
+ * @version 0.0.1 分词
+ */
+public class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * 索引时分词
+     *
+     * @param text 文本
+     * @return 词，可重复
+     */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * 查询时分词
+     *
+     * @param query 查询
+     * @return 词，可重复
+     */
+    public static List<String> tokenizeQuery(String query) {
+        return tokenize(query, true);
+    }
+
+    private static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int c = text.codePointAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                cjk(text.substring(start, i), query, tokens);
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && !isCjk(text.codePointAt(i)) && Character.isLetterOrDigit(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(c);
+            }
+        }
+        return tokens;
+    }
+
+    private static void cjk(String run, boolean query, List<String> tokens) {
+        int[] chars = run.codePoints().toArray();
+        if (!query || chars.length == 1) {
+            for (int c : chars) {
+                tokens.add(new String(Character.toChars(c)));
+            }
+        }
+        for (int j = 0; j + 1 < chars.length; j++) {
+            tokens.add(new String(chars, j, 2));
+        }
+    }
+
+    private static boolean isCjk(int c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -1,8 +1,19 @@
 package com.xmingl.base.service;
 
+import com.xmingl.base.data.DataArchiver;
+import com.xmingl.base.data.DataCodec;
+import com.xmingl.base.data.DataCodecs;
+import com.xmingl.base.data.DataMetrics;
+import com.xmingl.base.data.DataUtil;
+import com.xmingl.base.data.DataWriter;
 import com.xmingl.base.io.FileUtil;
 
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class BaseService {
 
@@ -18,6 +29,7 @@ public abstract class BaseService {
                                 .replace(FileUtil.EXTENSION_SEPARATOR, FileUtil.SYSTEM_SEPARATOR)
                             + FileUtil.SYSTEM_SEPARATOR;
         BASE_FILE_PATH = BASE_FILE_PATH.toLowerCase(Locale.ROOT);
+        DataMetrics.registerModule(getClass().getSimpleName().replace(SERVICE_SUFFIX, "").toLowerCase(Locale.ROOT), BASE_FILE_PATH);
     }
 
     /**
@@ -28,4 +40,94 @@ public abstract class BaseService {
     public static String getBaseFilePath() {
         return BASE_FILE_PATH;
     }
+
+    /**
+     * 获取模块数据文件夹
+     *
+     * @return 模块数据文件夹
+     */
+    public static File getDataDirectory() {
+        return new File(DataUtil.BASE_FILE_PATH, BASE_FILE_PATH);
+    }
+
+    /**
+     * 读取一天数据时并行读取的分片数，默认串行；文件较多的模块可以覆盖此方法开启并行读取
+     *
+     * @return 分片数，小于等于1为串行
+     * @see DataUtil#loadDataList(String, Class, int)
+     */
+    protected int getLoadParallelism() {
+        return 1;
+    }
+
+    /**
+     * 模块写入数据使用的编码，默认JSON；读取时按首字节识别编码，切换编码不影响已有数据的读取
+     *
+     * @return 编码
+     * @see DataCodecs
+     */
+    protected DataCodec getDataCodec() {
+        return DataCodecs.JSON;
+    }
+
+    /**
+     * 模块写入数据的落盘策略，默认每批写入后fsync
+     *
+     * @return 落盘策略
+     */
+    protected DataWriter.Durability getWriteDurability() {
+        return DataWriter.Durability.BATCH;
+    }
+
+    /**
+     * 按模块的编码和落盘策略保存数据
+     *
+     * @param relativePath 模块内的相对路径，一般为天文件夹名
+     * @param name         文件名
+     * @param value        数据
+     * @return 写入完成后结束，写入失败时异常结束
+     * @throws IOException 编码失败或等待写入队列时被中断
+     */
+    protected CompletableFuture<Void> saveData(String relativePath, String name, Object value) throws IOException {
+        return DataUtil.saveData(BASE_FILE_PATH + relativePath, name, value, getDataCodec(), getWriteDurability());
+    }
+
+    /**
+     * 按模块的编码和落盘策略在一个事务中保存多条数据
+     *
+     * @param relativePath 模块内的相对路径，一般为天文件夹名
+     * @param values       文件名 -> 数据
+     * @return 写入完成后结束，写入失败时异常结束
+     * @throws IOException 编码失败或等待写入队列时被中断
+     */
+    protected CompletableFuture<Void> saveData(String relativePath, Map<String, ?> values) throws IOException {
+        return DataUtil.saveData(BASE_FILE_PATH + relativePath, values, getDataCodec(), getWriteDurability());
+    }
+
+    /**
+     * 冷数据保留天数，早于此天数的天文件夹在后台按月压缩归档；默认不归档
+     *
+     * @return 保留最近几天不归档（包含今天），小于等于0时不归档
+     * @see DataArchiver
+     */
+    protected int getArchiveKeepDays() {
+        return 0;
+    }
+
+    /**
+     * 模块预热，如加载或重建索引、预读缓存；默认无操作<br/>
+     * 由StartInit在应用启动完成后于后台调用（可配置为启动过程中调用），预热期间模块可以正常访问
+     *
+     * @throws IOException 异常
+     */
+    public void warmUp() throws IOException {
+    }
+
+    @PostConstruct
+    public void scheduleArchive() {
+        int keepDays = getArchiveKeepDays();
+        if (keepDays > 0) {
+            DataArchiver.schedule(getDataDirectory(), keepDays);
+        }
+    }
 }
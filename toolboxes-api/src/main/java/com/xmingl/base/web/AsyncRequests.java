@@ -0,0 +1,113 @@
+package com.xmingl.base.web;
+
+import com.xmingl.base.data.DataIOExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写文件的接口在专用的有界线程池中执行，不占用Tomcat请求线程<br/>
+ * 请求线程只负责提交任务并立即返回{@link DeferredResult}；磁盘变慢时由本线程池排队，
+ * 不会耗尽Servlet线程池而阻塞其他接口。队列满时立即拒绝（503），等待超时同样返回503，超时的任务不再执行<br/>
+ * 流式输出由Spring MVC的异步执行器执行，不进入本线程池，只限制同时进行的数量
+ *
+ * @author XMINGL
+ * @version 0.0.1 异步请求
+ */
+public class AsyncRequests {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRequests.class);
+
+    /**
+     * 线程数，与数据读取线程池相同，按磁盘并发读取能力设置
+     */
+    public static final int THREADS = DataIOExecutor.THREADS;
+
+    /**
+     * 排队的请求数上限，超过时立即拒绝
+     */
+    private static final int QUEUE_SIZE = 128;
+
+    /**
+     * 请求从提交到完成的超时时间
+     */
+    private static final long TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * 同时进行的流式输出数上限，超过时返回503
+     */
+    public static final int MAX_STREAMS = THREADS;
+
+    private static final Semaphore STREAMS = new Semaphore(MAX_STREAMS);
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            runnable -> {
+                Thread thread = new Thread(runnable, "request-io-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private AsyncRequests() {
+    }
+
+    /**
+     * 在请求线程池中执行
+     *
+     * @param task 任务，抛出的异常按同步接口的方式处理
+     * @return 异步结果
+     * @throws ServiceBusyException 队列已满
+     */
+    public static <T> DeferredResult<T> submit(Callable<T> task) {
+        DeferredResult<T> result = new DeferredResult<>(TIMEOUT_MILLIS);
+        result.onTimeout(() -> result.setErrorResult(new ServiceBusyException("请求超时")));
+        try {
+            EXECUTOR.execute(() -> {
+                if (result.isSetOrExpired()) {
+                    return;
+                }
+                try {
+                    result.setResult(task.call());
+                } catch (Exception e) {
+                    result.setErrorResult(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("async request rejected, active: {} , queued: {}", EXECUTOR.getActiveCount(), EXECUTOR.getQueue().size());
+            throw new ServiceBusyException("服务繁忙，请稍后重试");
+        }
+        return result;
+    }
+
+    /**
+     * 限制流式输出的并发数，开始输出时取得许可，输出结束后释放；没有许可时不输出，返回503
+     *
+     * @param body 流式输出
+     * @return 限制并发数的流式输出
+     */
+    public static StreamingResponseBody stream(StreamingResponseBody body) {
+        return out -> {
+            if (!STREAMS.tryAcquire()) {
+                logger.warn("stream request rejected, max streams: {}", MAX_STREAMS);
+                throw new ServiceBusyException("服务繁忙，请稍后重试");
+            }
+            try {
+                body.writeTo(out);
+            } finally {
+                STREAMS.release();
+            }
+        };
+    }
+}
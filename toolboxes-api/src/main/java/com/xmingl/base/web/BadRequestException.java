@@ -0,0 +1,18 @@
+package com.xmingl.base.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 请求参数不合法，返回400
+ *
+ * @author XMINGL
+ * @version 0.0.1 参数不合法
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends IllegalArgumentException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
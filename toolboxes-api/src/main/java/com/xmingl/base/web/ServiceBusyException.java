@@ -0,0 +1,18 @@
+package com.xmingl.base.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 服务繁忙：请求线程池已满或等待超时，返回503，客户端可稍后重试
+ *
+ * @author XMINGL
+ * @version 0.0.1 服务繁忙
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,112 @@
+package com.xmingl.base.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-Sent Events订阅者集合，向所有订阅者广播事件<br/>
+ * 每个浏览器保持一个长连接；定时发送注释行作为心跳，发送失败的连接立即移除。
+ * 连接超时后由浏览器的EventSource自动重连
+ *
+ * @author XMINGL
+ * @version 0.0.1 SSE广播
+ */
+public class SseHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseHub.class);
+
+    /**
+     * 连接超时时间
+     */
+    private static final long TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    /**
+     * 心跳间隔，避免代理断开空闲连接，同时发现已断开的连接
+     */
+    private static final long HEARTBEAT_SECONDS = 25;
+
+    /**
+     * 浏览器断开后的重连间隔
+     */
+    private static final long RECONNECT_MILLIS = 3000;
+
+    private static final ScheduledExecutorService HEARTBEAT = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+
+    private final Set<SseEmitter> emitters = new CopyOnWriteArraySet<>();
+
+    /**
+     * @param name 名称，用于日志
+     */
+    public SseHub(String name) {
+        this.name = name;
+        HEARTBEAT.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 订阅
+     *
+     * @return 连接
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MILLIS);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitters.add(emitter);
+        send(emitter, SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("connected"));
+        return emitter;
+    }
+
+    /**
+     * 向所有订阅者发送事件
+     *
+     * @param event 事件名
+     * @param data  数据，按JSON发送
+     */
+    public void publish(String event, Object data) {
+        for (SseEmitter emitter : emitters) {
+            send(emitter, SseEmitter.event().name(event).data(data));
+        }
+    }
+
+    /**
+     * 订阅者数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return emitters.size();
+    }
+
+    private void heartbeat() {
+        for (SseEmitter emitter : emitters) {
+            send(emitter, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            // 同一个连接不能并发写入
+            synchronized (emitter) {
+                emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+            logger.debug("sse: {} , reason: {}", name, e.getMessage());
+        }
+    }
+}
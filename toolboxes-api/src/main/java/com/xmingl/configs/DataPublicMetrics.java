@@ -0,0 +1,29 @@
+package com.xmingl.configs;
+
+import com.xmingl.base.data.DataMetrics;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过Actuator的/metrics公开数据读取指标
+ *
+ * @see DataMetrics
+ */
+@Component
+public class DataPublicMetrics implements PublicMetrics {
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Map.Entry<String, Number> e : DataMetrics.snapshot().entrySet()) {
+            metrics.add(new Metric<>(e.getKey(), e.getValue()));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,51 @@
+package com.xmingl.configs;
+
+import com.xmingl.main.ModuleState;
+import com.xmingl.main.StartInit;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 通过Actuator的/health报告各模块的初始化状态<br/>
+ * 有模块失败时为DOWN，有模块仍在预热时为OUT_OF_SERVICE，全部预热完成后为UP
+ *
+ * @see StartInit
+ */
+@Component
+public class ModuleHealthIndicator extends AbstractHealthIndicator {
+
+    @Resource
+    private StartInit startInit;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        boolean failed = false;
+        boolean ready = true;
+        Map<String, Object> modules = new LinkedHashMap<>();
+        for (ModuleState state : startInit.getModuleStates()) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("phase", state.getPhase());
+            detail.put("initMillis", state.getInitMillis());
+            detail.put("warmUpMillis", state.getWarmUpMillis());
+            if (state.getError() != null) {
+                detail.put("error", state.getError());
+            }
+            modules.put(state.getClassName(), detail);
+            failed |= state.getPhase() == ModuleState.Phase.FAILED;
+            ready &= state.getPhase() == ModuleState.Phase.READY;
+        }
+        if (failed) {
+            builder.down();
+        } else if (!ready) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+        builder.withDetail("modules", modules);
+    }
+}
@@ -0,0 +1,101 @@
+package com.xmingl.main;
+
+import java.io.File;
+
+/**
+ * 自动管理模块的初始化状态<br/>
+ * 启动时创建文件夹、恢复预写日志后为{@link Phase#WARMING_UP}，此时模块已可以访问；
+ * 预热（数据量索引、模块自身的索引与缓存）完成后为{@link Phase#READY}
+ *
+ * @author XMINGL
+ * @version 0.0.1 模块初始化状态
+ */
+public class ModuleState {
+
+    /**
+     * 初始化阶段
+     */
+    public enum Phase {
+        /**
+         * 创建文件夹、恢复预写日志
+         */
+        INITIALIZING,
+        /**
+         * 已可以访问，后台预热中
+         */
+        WARMING_UP,
+        /**
+         * 预热完成
+         */
+        READY,
+        /**
+         * 初始化或预热失败
+         */
+        FAILED
+    }
+
+    private final String className;
+
+    private final File directory;
+
+    private volatile Phase phase = Phase.INITIALIZING;
+
+    private volatile String error;
+
+    private volatile long initMillis;
+
+    private volatile long warmUpMillis;
+
+    ModuleState(String className, File directory) {
+        this.className = className;
+        this.directory = directory;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return 失败原因，未失败时为null
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return 创建文件夹、恢复预写日志的耗时
+     */
+    public long getInitMillis() {
+        return initMillis;
+    }
+
+    /**
+     * @return 预热耗时，未完成时为0
+     */
+    public long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+
+    void initialized(long millis) {
+        initMillis = millis;
+        phase = Phase.WARMING_UP;
+    }
+
+    void warmedUp(long millis) {
+        warmUpMillis = millis;
+        phase = Phase.READY;
+    }
+
+    void failed(String reason) {
+        error = reason;
+        phase = Phase.FAILED;
+    }
+}
@@ -2,90 +2,284 @@ package com.xmingl.main;
 
 import com.xmingl.SystemBaseInfo;
 import com.xmingl.base.anno.AutoConfModule;
+import com.xmingl.base.data.DataCountIndex;
+import com.xmingl.base.data.DataDirectoryLock;
+import com.xmingl.base.data.DataWal;
 import com.xmingl.base.io.FileUtil;
 import com.xmingl.base.service.BaseService;
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * 自动管理模块的初始化<br/>
+ * 启动时各模块并行创建文件夹、重放预写日志，完成后模块即可访问；
+ * 预热（数据量索引加载或重建、{@link BaseService#warmUp()}）默认在应用启动完成后于后台并行执行，
+ * 启动时间不随模块数量及其索引重建增长。各模块状态由{@link ModuleState}记录，通过/health报告
+ *
+ * @author XMINGL
+ * @version 0.0.2 并行初始化，推迟预热
+ */
 @Component
 public class StartInit {
     public static Logger logger = LoggerFactory.getLogger(StartInit.class);
 
-    private static final String BASE_FILE_PATH = "BASE_FILE_PATH";
+    /**
+     * 预热是否推迟到应用启动完成之后；为false时在开始接收请求之前等待预热完成
+     */
+    @Value("${startup.defer-warm-up:true}")
+    private boolean deferWarmUp = true;
+
+    /**
+     * 类名 -> 模块状态，初始化时建立后不再变化
+     */
+    private volatile Map<String, ModuleState> moduleStates = Collections.emptyMap();
+
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+
+    private ExecutorService executor;
 
     @PostConstruct
     public void init() {
         logger.info("=============================== StartInit  start");
-        // 获取系统需要自动管理的模块service
-        Set<Class<?>> autoConfModules = getAutoConfModules();
+        // 获取系统需要自动管理的模块service：类名 -> 模块相对路径
+        Map<String, String> autoConfModules = getAutoConfModules();
         logger.info("StartInit autoConfModules：{}", autoConfModules.size());
-        logger.info("StartInit create system dir start");
-        // 创建系统所需文件夹
-        createDir(autoConfModules);
-        logger.info("StartInit create system dir finish");
+        File projectDirectory = new File(FileUtil.getUserDirectory(), SystemBaseInfo.PROJECT_NAME);
+        logger.info("project datafile save directory: {}", projectDirectory.getAbsolutePath());
+        // 与离线工具互斥：工具运行期间不启动，启动后工具拒绝运行
+        try {
+            DataDirectoryLock.acquire(projectDirectory);
+        } catch (IOException e) {
+            logger.error("data directory: {} , reason: {}", projectDirectory, e.getMessage());
+            logger.error("System start error!");
+            System.exit(-1);
+        }
+        Map<String, ModuleState> states = new LinkedHashMap<>();
+        for (Map.Entry<String, String> module : autoConfModules.entrySet()) {
+            states.put(module.getKey(), new ModuleState(module.getKey(), new File(projectDirectory, module.getValue())));
+        }
+        moduleStates = Collections.unmodifiableMap(states);
+        executor = newExecutor(states.size());
+        logger.info("StartInit init modules start");
+        // 各模块并行创建文件夹、重放未检查点的预写日志
+        long start = System.nanoTime();
+        runAll(states.values(), this::initModule);
+        logger.info("StartInit init modules finish, millis: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        for (ModuleState state : states.values()) {
+            if (state.getPhase() == ModuleState.Phase.FAILED) {
+                logger.error("System start error!");
+                System.exit(-1);
+            }
+        }
         logger.info("=============================== StartInit  end");
     }
 
+    /**
+     * 不推迟预热时，在开始接收请求之前预热
+     *
+     * @param event 容器刷新完成
+     */
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        if (!deferWarmUp) {
+            warmUp(event.getApplicationContext()).join();
+        }
+    }
 
-    private Set<Class<?>> getAutoConfModules() {
-        Set<Class<?>> classes = new HashSet<>();
-        String name = this.getClass().getName();
-        String[] packages = name.split("\\" + FileUtil.EXTENSION_SEPARATOR);
-        if (packages.length < 2) {
-            return classes;
+    /**
+     * 推迟预热时，应用启动完成后在后台预热
+     *
+     * @param event 应用启动完成
+     */
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (deferWarmUp) {
+            warmUp(event.getApplicationContext());
         }
-        name = packages[0] + FileUtil.EXTENSION_SEPARATOR + packages[1];
-        Reflections ref = new Reflections(name);
-        classes = ref.getTypesAnnotatedWith(AutoConfModule.class);
-        return classes;
     }
 
     /**
-     * 创建系统所需文件夹
+     * 各模块的初始化状态
      *
-     * @param autoConfModules 使用注解的类
+     * @return 按模块登记顺序
      */
-    private void createDir(Set<Class<?>> autoConfModules) {
-        boolean successCreateFileDir = true;
-        File projectDirectory = new File(FileUtil.getUserDirectory(), SystemBaseInfo.PROJECT_NAME);
-        logger.info("project datafile save directory: {}", projectDirectory.getAbsolutePath());
-        for (Class<?> clazz : autoConfModules) {
-            if (clazz.getSuperclass() != BaseService.class) {
-                logger.error("classname: {} , reason: {}", clazz.getName(), "非继承BaseService");
-                successCreateFileDir = false;
-                continue;
+    public Collection<ModuleState> getModuleStates() {
+        return moduleStates.values();
+    }
+
+    /**
+     * 获取自动管理的模块：读取编译时由注解处理器生成的索引，索引不存在（未经注解处理器编译）时系统退出
+     *
+     * @return 类名 -> 模块相对路径
+     * @see com.xmingl.base.anno.AutoConfModuleProcessor
+     */
+    private Map<String, String> getAutoConfModules() {
+        Map<String, String> modules = readModuleIndex();
+        if (modules == null) {
+            logger.error("module index: {} , reason: {}", AutoConfModule.INDEX_LOCATION, "索引不存在，需经AutoConfModuleProcessor编译");
+            logger.error("System start error!");
+            System.exit(-1);
+        }
+        return modules;
+    }
+
+    /**
+     * 读取编译时生成的模块索引
+     *
+     * @return 类名 -> 模块相对路径，没有索引时为null
+     */
+    private Map<String, String> readModuleIndex() {
+        Map<String, String> modules = new LinkedHashMap<>();
+        boolean found = false;
+        try {
+            Enumeration<URL> indexes = getClass().getClassLoader().getResources(AutoConfModule.INDEX_LOCATION);
+            while (indexes.hasMoreElements()) {
+                found = true;
+                URL index = indexes.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int separator = line.indexOf('=');
+                        if (line.startsWith("#") || separator <= 0) {
+                            continue;
+                        }
+                        modules.put(line.substring(0, separator), line.substring(separator + 1));
+                    }
+                }
             }
+        } catch (IOException e) {
+            logger.error("module index: {} , reason: {}", AutoConfModule.INDEX_LOCATION, e.getMessage());
+            return null;
+        }
+        return found ? modules : null;
+    }
+
+    /**
+     * 创建模块文件夹，重放模块的预写日志，恢复上次异常退出时未完成的写入<br/>
+     * 文件夹创建失败或预写日志重放失败时模块失败，系统退出，不在未重放的日志之后接受写入
+     *
+     * @param state 模块状态
+     */
+    private void initModule(ModuleState state) {
+        long start = System.nanoTime();
+        File moduleDir = state.getDirectory();
+        if (!moduleDir.exists()) {
             try {
-                Constructor<?> constructor = clazz.getConstructor();
-                Object newInstance = constructor.newInstance();
-                String path = clazz.getField(BASE_FILE_PATH).get(newInstance).toString();
-                File clazzFile = new File(projectDirectory, path);
-                if (clazzFile.exists()) {
-                    continue;
-                }
-                FileUtil.forceMkdir(clazzFile);
-            } catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException | NoSuchFieldException | IOException e) {
-                logger.error("classname: {} , reason: {}", clazz.getName(), e.getMessage());
-                successCreateFileDir = false;
+                FileUtil.forceMkdir(moduleDir);
+            } catch (IOException e) {
+                logger.error("classname: {} , reason: {}", state.getClassName(), e.getMessage());
+                state.failed(e.getMessage());
+                return;
             }
         }
-        if (!successCreateFileDir) {
-            logger.error("System start error!");
-            System.exit(-1);
+        try {
+            DataWal.of(moduleDir).recover();
+        } catch (IOException | RuntimeException e) {
+            logger.error("recover: {} , reason: {}", moduleDir, e.getMessage());
+            state.failed(e.getMessage());
+            return;
         }
+        state.initialized(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
 
+    /**
+     * 并行预热所有已初始化的模块，只执行一次，完成后关闭初始化线程池
+     *
+     * @param context 应用上下文，用于获取模块service
+     * @return 全部模块预热结束后完成
+     */
+    private CompletableFuture<Void> warmUp(ApplicationContext context) {
+        if (!warmUpStarted.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.info("StartInit warm up modules start");
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (ModuleState state : moduleStates.values()) {
+            if (state.getPhase() == ModuleState.Phase.WARMING_UP) {
+                futures.add(CompletableFuture.runAsync(() -> warmUpModule(state, context), executor));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> {
+            executor.shutdown();
+            logger.info("StartInit warm up modules finish, millis: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        });
     }
 
+    /**
+     * 预热模块：加载或重建数据量索引，再执行模块service的{@link BaseService#warmUp()}
+     *
+     * @param state   模块状态
+     * @param context 应用上下文
+     */
+    private void warmUpModule(ModuleState state, ApplicationContext context) {
+        long start = System.nanoTime();
+        try {
+            DataCountIndex.of(state.getDirectory());
+            Class<?> clazz = Class.forName(state.getClassName(), true, getClass().getClassLoader());
+            for (Object service : context.getBeansOfType(clazz).values()) {
+                if (service instanceof BaseService) {
+                    ((BaseService) service).warmUp();
+                }
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            state.warmedUp(millis);
+            logger.info("warm up: {} , millis: {}", state.getClassName(), millis);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            logger.error("warm up: {} , reason: {}", state.getClassName(), e.getMessage());
+            state.failed(e.getMessage());
+        }
+    }
 
-}
+    /**
+     * 在初始化线程池中对每个模块执行，等待全部完成
+     */
+    private void runAll(Collection<ModuleState> states, Consumer<ModuleState> action) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (ModuleState state : states) {
+            futures.add(CompletableFuture.runAsync(() -> action.accept(state), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
 
+    /**
+     * 初始化线程池，线程数不超过模块数和CPU核数
+     */
+    private static ExecutorService newExecutor(int modules) {
+        int threads = Math.max(1, Math.min(modules, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "module-init-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
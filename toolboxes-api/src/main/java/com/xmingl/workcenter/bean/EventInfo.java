@@ -1,7 +1,11 @@
 package com.xmingl.workcenter.bean;
 
+import com.xmingl.base.data.DataField;
+
 public class EventInfo {
+    @DataField(1)
     String filename;
+    @DataField(2)
     String title;
 
     public String getFilename() {
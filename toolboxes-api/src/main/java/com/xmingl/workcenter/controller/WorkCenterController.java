@@ -1,31 +1,218 @@
 package com.xmingl.workcenter.controller;
 
+import com.alibaba.fastjson.JSON;
+import com.xmingl.base.data.DataMergeIterator;
+import com.xmingl.base.data.DataPage;
+import com.xmingl.base.data.DataYearCounts;
 import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.web.AsyncRequests;
+import com.xmingl.base.web.BadRequestException;
 import com.xmingl.workcenter.bean.EventInfo;
+import com.xmingl.workcenter.bean.EventSearchHit;
 import com.xmingl.workcenter.service.WorkCenterService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Resource;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 读取数据的接口在{@link AsyncRequests}线程池中执行，繁忙时返回503；搜索、补全只访问内存，直接执行<br/>
+ * 按天读取的接口带ETag（当天数据在内存中的版本，随数据变化监听与写入递增），If-None-Match一致时直接返回304，不访问文件
+ */
 @RestController
 @RequestMapping("/WorkCenter")
 public class WorkCenterController {
+    /**
+     * 批量查看时最多的日期数
+     */
+    private static final int MAX_BATCH_DATES = 62;
+
+    /**
+     * 按日期范围查看时最多的事件数
+     */
+    private static final int MAX_BETWEEN_LIMIT = 2000;
+
+    /**
+     * 按日期范围查看时最多的天数
+     */
+    private static final int MAX_BETWEEN_DAYS = 366;
+
+    /**
+     * 按年统计时的年份范围，与文件夹名yyyyMMdd的四位年份一致
+     */
+    private static final int MIN_YEAR = 1;
+    private static final int MAX_YEAR = 9999;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+
     @Resource
     private WorkCenterService workCenterService;
 
     @RequestMapping("listByDates")
-    public List<EventInfo> listEventInfosByDates(long millsecord) throws IOException {
+    public DeferredResult<List<EventInfo>> listEventInfosByDates(long millsecord, WebRequest request) {
+        Date date = DateUtil.getDate(millsecord);
+        if (notModified(request, workCenterService.getDateVersion(date))) {
+            return null;
+        }
+        return AsyncRequests.submit(() -> workCenterService.listEventInfosByDate(date));
+    }
+
+    /**
+     * 按文件名分页查看某一天的事件，cursor为上一页返回的nextCursor
+     */
+    @RequestMapping("listPageByDates")
+    public DeferredResult<DataPage<EventInfo>> listEventInfoPageByDates(long millsecord, String cursor,
+                                                                       @RequestParam(defaultValue = "0") int limit,
+                                                                       WebRequest request) {
         Date date = DateUtil.getDate(millsecord);
-        return workCenterService.listEventInfosByDate(date);
+        String version = workCenterService.getDateVersion(date);
+        // 游标原样编码（URL安全的Base64）到ETag中，不同游标不会得到相同的ETag
+        String page = cursor == null || cursor.isEmpty() ? ""
+                : Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+        if (version != null && notModified(request, version + "-" + page + "-" + limit)) {
+            return null;
+        }
+        return AsyncRequests.submit(() -> workCenterService.listEventInfosByDate(date, cursor, limit));
+    }
+
+    /**
+     * 以NDJSON（每行一个事件）流式输出某一天的事件，边读取边输出，内存占用与当天事件数无关；
+     * 同时进行的流式输出数受{@link AsyncRequests#MAX_STREAMS}限制
+     */
+    @RequestMapping("streamByDates")
+    public ResponseEntity<StreamingResponseBody> streamEventInfosByDates(long millsecord, WebRequest request) {
+        Date date = DateUtil.getDate(millsecord);
+        if (notModified(request, workCenterService.getDateVersion(date))) {
+            return null;
+        }
+        StreamingResponseBody body = AsyncRequests.stream(out -> writeNdjson(workCenterService.iterateEventInfosBetween(date, date), out));
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * 查看一段日期内的事件，数量超过{@link #MAX_BETWEEN_LIMIT}时按上限返回
+     */
+    @RequestMapping("listBetween")
+    public DeferredResult<Map<Long, List<EventInfo>>> listEventInfosBetween(long from, long to,
+                                                                            @RequestParam(defaultValue = "500") int limit) {
+        if (limit <= 0) {
+            throw new BadRequestException("数量须大于0");
+        }
+        Date fromDate = DateUtil.getDate(from);
+        Date toDate = DateUtil.getDate(to);
+        long days = DateUtil.getEpochDay(toDate) - DateUtil.getEpochDay(fromDate) + 1;
+        if (days < 1 || days > MAX_BETWEEN_DAYS) {
+            throw new BadRequestException("日期范围须在1至" + MAX_BETWEEN_DAYS + "天之间");
+        }
+        int max = Math.min(limit, MAX_BETWEEN_LIMIT);
+        return AsyncRequests.submit(() -> workCenterService.listEventInfosBetween(fromDate, toDate, max));
+    }
+
+    @RequestMapping("search")
+    public List<EventSearchHit> search(String q, @RequestParam(defaultValue = "20") int limit) {
+        return workCenterService.searchEventInfos(q, Math.min(limit, 200));
+    }
+
+    @RequestMapping("suggest")
+    public List<String> suggest(String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return workCenterService.suggestTitles(prefix, Math.min(limit, 50));
+    }
+
+    @RequestMapping("listByDateList")
+    public DeferredResult<Map<Long, List<EventInfo>>> listEventInfosByDateList(long[] millsecords) {
+        if (millsecords == null || millsecords.length == 0 || millsecords.length > MAX_BATCH_DATES) {
+            throw new BadRequestException("日期数量须在1至" + MAX_BATCH_DATES + "之间");
+        }
+        List<Date> dates = new ArrayList<>(millsecords.length);
+        for (long millsecord : millsecords) {
+            dates.add(DateUtil.getDate(millsecord));
+        }
+        return AsyncRequests.submit(() -> workCenterService.listEventInfosByDates(dates));
     }
 
     @RequestMapping("listDateTaskCount")
-    public int listDateTaskCount(long millsecord) throws IOException {
+    public DeferredResult<Integer> listDateTaskCount(long millsecord, WebRequest request) {
         Date date = DateUtil.getDate(millsecord);
-        return workCenterService.listDateTaskCount(date);
+        if (notModified(request, workCenterService.getDateVersion(date))) {
+            return null;
+        }
+        return AsyncRequests.submit(() -> workCenterService.listDateTaskCount(date));
+    }
+
+    /**
+     * 统计一段日期内每天的事件数，天数不超过{@link #MAX_BETWEEN_DAYS}
+     */
+    @RequestMapping("listDateTaskCounts")
+    public DeferredResult<Map<Long, Integer>> listDateTaskCounts(long from, long to) {
+        Date fromDate = DateUtil.getDate(from);
+        Date toDate = DateUtil.getDate(to);
+        long days = DateUtil.getEpochDay(toDate) - DateUtil.getEpochDay(fromDate) + 1;
+        if (days < 1 || days > MAX_BETWEEN_DAYS) {
+            throw new BadRequestException("日期范围须在1至" + MAX_BETWEEN_DAYS + "天之间");
+        }
+        return AsyncRequests.submit(() -> workCenterService.listDateTaskCounts(fromDate, toDate));
+    }
+
+    @RequestMapping("listYearTaskCounts")
+    public DeferredResult<DataYearCounts> listYearTaskCounts(int year) {
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            throw new BadRequestException("年份须在" + MIN_YEAR + "至" + MAX_YEAR + "之间");
+        }
+        return AsyncRequests.submit(() -> workCenterService.listYearTaskCounts(year));
+    }
+
+    /**
+     * 版本只读内存，在请求线程中判断；版本未知时不带ETag，正常读取
+     */
+    private static boolean notModified(WebRequest request, String version) {
+        return version != null && request.checkNotModified(version);
+    }
+
+    /**
+     * 第一条立即刷出，之后按缓冲区大小刷出
+     */
+    private static void writeNdjson(DataMergeIterator<EventInfo> events, OutputStream output) throws IOException {
+        OutputStream out = new BufferedOutputStream(output);
+        boolean first = true;
+        try {
+            while (events.hasNext()) {
+                JSON.writeJSONString(out, events.next());
+                out.write('\n');
+                if (first) {
+                    out.flush();
+                    first = false;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    @RequestMapping("subscribeTaskCounts")
+    public SseEmitter subscribeTaskCounts() {
+        return workCenterService.subscribeTaskCountChanges();
+    }
+
+    @RequestMapping("getEventCacheStats")
+    public Map<String, Long> getEventCacheStats() {
+        return workCenterService.getEventCacheStats();
     }
 }
@@ -0,0 +1,105 @@
+package com.xmingl.workcenter.service;
+
+import com.xmingl.base.data.DataUtil;
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.web.SseHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 任务数量变化推送<br/>
+ * 数据变化通知来自{@link com.xmingl.base.data.DataWatcher}（所有模块共用一个WatchService）；
+ * 第一次变化后等待{@link #DEBOUNCE_MILLIS}，期间变化的天合并为一次推送，只在有订阅者时统计数量。
+ * 推送事件：counts（epoch-day -> 任务数量，数量为0表示当天已没有任务）、reset（变化丢失，需重新获取）
+ *
+ * @author XMINGL
+ * @version 0.0.1 任务数量推送
+ */
+class EventCountNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventCountNotifier.class);
+
+    /**
+     * 合并变化的时间窗口
+     */
+    private static final long DEBOUNCE_MILLIS = 1000;
+
+    private final String modulePath;
+
+    private final SseHub hub = new SseHub("workcenter-counts");
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile boolean reset;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "workcenter-notify");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param modulePath 模块相对路径
+     */
+    EventCountNotifier(String modulePath) {
+        this.modulePath = modulePath;
+    }
+
+    SseEmitter subscribe() {
+        return hub.subscribe();
+    }
+
+    /**
+     * 某一天的数据变化
+     *
+     * @param epochDay epoch-day，为{@link DateUtil#INVALID_EPOCH_DAY}时所有天都可能变化
+     */
+    void onChange(long epochDay) {
+        if (hub.size() == 0) {
+            return;
+        }
+        if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+            reset = true;
+        } else {
+            changed.add(epochDay);
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flush, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        if (reset) {
+            reset = false;
+            changed.clear();
+            hub.publish("reset", "");
+            return;
+        }
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (Long epochDay : changed) {
+            changed.remove(epochDay);
+            try {
+                counts.put(epochDay, DataUtil.listDataNum(modulePath + DateUtil.formatEpochDay(epochDay)));
+            } catch (IOException e) {
+                logger.error("count: {} , reason: {}", DateUtil.formatEpochDay(epochDay), e.getMessage());
+            }
+        }
+        if (!counts.isEmpty()) {
+            hub.publish("counts", counts);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.xmingl.workcenter.service;
+
+import com.xmingl.base.data.DataUtil;
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.search.PrefixTrie;
+import com.xmingl.base.search.TextHit;
+import com.xmingl.base.search.TextIndex;
+import com.xmingl.workcenter.bean.EventInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件标题的全文索引与补全<br/>
+ * 索引保存在模块文件夹下的{@link #INDEX_FILE_NAME}；启动时在后台加载，只重新索引修改标记变化的天，
+ * 之后由数据变化通知按天增量更新，并延迟保存。索引线程只有一个，所有修改都在其中执行<br/>
+ * 补全使用内存中的{@link PrefixTrie}，加载索引后由全部标题建立，重新索引某一天时按新旧标题的差异更新频次
+ *
+ * @author XMINGL
+ * @version 0.0.1 事件标题索引
+ */
+class EventTitleIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventTitleIndex.class);
+
+    /**
+     * 索引文件名
+     */
+    static final String INDEX_FILE_NAME = "title.idx";
+
+    /**
+     * 数据变化后等待此时间再重新索引，合并连续写入
+     */
+    private static final long REINDEX_DELAY_MILLIS = 500;
+
+    /**
+     * 索引变化后等待此时间再保存
+     */
+    private static final long SAVE_DELAY_MILLIS = 30 * 1000;
+
+    private final String modulePath;
+
+    private final File indexFile;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "workcenter-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile TextIndex index = new TextIndex();
+
+    private volatile PrefixTrie titles = new PrefixTrie();
+
+    private ScheduledFuture<?> saveTask;
+
+    /**
+     * @param modulePath 模块相对路径
+     * @param moduleDir  模块文件夹
+     */
+    EventTitleIndex(String modulePath, File moduleDir) {
+        this.modulePath = modulePath;
+        this.indexFile = new File(moduleDir, INDEX_FILE_NAME);
+    }
+
+    /**
+     * 在后台加载并补齐索引
+     *
+     * @return 索引加载并与磁盘数据对齐后完成
+     */
+    CompletableFuture<Void> start() {
+        return CompletableFuture.runAsync(this::build, executor);
+    }
+
+    /**
+     * 某一天的数据变化
+     *
+     * @param epochDay epoch-day，为{@link DateUtil#INVALID_EPOCH_DAY}时检查所有天
+     */
+    void onChange(long epochDay) {
+        if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+            executor.execute(this::sync);
+        } else if (pending.add(epochDay)) {
+            executor.schedule(() -> {
+                pending.remove(epochDay);
+                reindex(epochDay);
+                scheduleSave();
+            }, REINDEX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 搜索标题，索引尚未加载完成时结果可能不完整
+     *
+     * @param query 查询
+     * @param limit 最多返回的数量
+     * @return 按得分从高到低排序
+     */
+    List<TextHit> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /**
+     * 按前缀补全标题
+     *
+     * @param prefix 前缀
+     * @param limit  最多返回的数量
+     * @return 按出现次数从高到低排序的标题
+     */
+    List<String> suggest(String prefix, int limit) {
+        return titles.suggest(prefix, limit);
+    }
+
+    private void build() {
+        TextIndex loaded = TextIndex.load(indexFile);
+        PrefixTrie trie = new PrefixTrie();
+        for (String title : loaded.texts()) {
+            trie.add(title, 1);
+        }
+        index = loaded;
+        titles = trie;
+        sync();
+    }
+
+    /**
+     * 与磁盘数据对齐：删除已没有数据的天，重新索引修改标记变化的天
+     */
+    private void sync() {
+        Set<Long> days = DataUtil.listDataNums(modulePath, Long.MIN_VALUE + 1, Long.MAX_VALUE).keySet();
+        int reindexed = 0;
+        for (long epochDay : index.days()) {
+            if (!days.contains(epochDay)) {
+                removeDay(epochDay);
+                reindexed++;
+            }
+        }
+        for (long epochDay : days) {
+            Long stamp = index.stamp(epochDay);
+            if (stamp == null || stamp != DataUtil.getDataStamp(dayPath(epochDay))) {
+                reindex(epochDay);
+                reindexed++;
+            }
+        }
+        if (reindexed > 0) {
+            save();
+        }
+        logger.info("title index: {} , days: {} , reindexed: {} , docs: {}", indexFile, days.size(), reindexed, index.size());
+    }
+
+    private void reindex(long epochDay) {
+        String dayPath = dayPath(epochDay);
+        // 先取修改标记再读取，读取期间的变化会使标记不一致，下次对齐时重新索引
+        long stamp = DataUtil.getDataStamp(dayPath);
+        try {
+            List<EventInfo> events = DataUtil.loadDataList(dayPath, EventInfo.class);
+            if (events.isEmpty()) {
+                removeDay(epochDay);
+                return;
+            }
+            Map<String, String> docs = new LinkedHashMap<>();
+            for (EventInfo event : events) {
+                if (event.getFilename() != null) {
+                    docs.put(event.getFilename(), event.getTitle());
+                }
+            }
+            for (String title : index.texts(epochDay)) {
+                titles.add(title, -1);
+            }
+            index.replaceDay(epochDay, stamp, docs);
+            for (String title : docs.values()) {
+                titles.add(title, 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("title index: {} , reason: {}", dayPath, e.getMessage());
+        }
+    }
+
+    private void removeDay(long epochDay) {
+        for (String title : index.texts(epochDay)) {
+            titles.add(title, -1);
+        }
+        index.removeDay(epochDay);
+    }
+
+    private String dayPath(long epochDay) {
+        return modulePath + DateUtil.formatEpochDay(epochDay);
+    }
+
+    private void scheduleSave() {
+        if (saveTask == null || saveTask.isDone()) {
+            saveTask = executor.schedule(this::save, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void save() {
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            logger.error("title index: {} , reason: {}", indexFile, e.getMessage());
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package com.xmingl.workcenter.service;
 
+import com.xmingl.base.data.DataMergeIterator;
+import com.xmingl.base.data.DataPage;
+import com.xmingl.base.data.DataYearCounts;
 import com.xmingl.workcenter.bean.EventInfo;
+import com.xmingl.workcenter.bean.EventSearchHit;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public interface WorkCenterService {
 
@@ -16,10 +22,96 @@ public interface WorkCenterService {
      */
     List<EventInfo> listEventInfosByDate(Date date) throws IOException;
 
+    /**
+     * 批量获取多天的事件，按日期顺序一次读取
+     * @param dates 日期，重复的日期只读取一次
+     * @return epoch-day -> 当天的事件，按日期排序，没有事件的日期为空集合
+     * @throws IOException
+     */
+    Map<Long, List<EventInfo>> listEventInfosByDates(List<Date> dates) throws IOException;
+
+    /**
+     * 按文件名分页获取某一天的事件，只读取本页的文件
+     * @param date 日期
+     * @param cursor 游标，即上一页最后一个事件的文件名，为空时从头开始
+     * @param limit 每页数量，小于等于0时返回全部
+     * @return 本页事件
+     * @throws IOException
+     */
+    DataPage<EventInfo> listEventInfosByDate(Date date, String cursor, int limit) throws IOException;
+
+    /**
+     * 惰性读取一段日期内的事件，按日期、文件名排序，每天在轮到时才读取
+     * @param from 开始日期（包含）
+     * @param to 结束日期（包含）
+     * @return 事件迭代器，{@link DataMergeIterator#currentKey()}为事件所在的epoch-day
+     */
+    DataMergeIterator<EventInfo> iterateEventInfosBetween(Date from, Date to);
+
+    /**
+     * 获取一段日期内的事件，达到数量上限后不再读取后续的天
+     * @param from 开始日期（包含）
+     * @param to 结束日期（包含）
+     * @param limit 最多返回的数量，须大于0
+     * @return epoch-day -> 当天的事件，按日期排序，没有事件的日期不返回
+     * @throws IOException
+     */
+    Map<Long, List<EventInfo>> listEventInfosBetween(Date from, Date to, int limit) throws IOException;
+
+    /**
+     * 按标题搜索事件
+     * @param query 查询，中文按字切分，其他按单词切分
+     * @param limit 最多返回的数量
+     * @return 按相关度从高到低排序，相关度相同时日期新的在前
+     */
+    List<EventSearchHit> searchEventInfos(String query, int limit);
+
+    /**
+     * 按前缀补全事件标题
+     * @param prefix 前缀，不区分大小写
+     * @param limit 最多返回的数量
+     * @return 历史标题，按出现次数从高到低排序
+     */
+    List<String> suggestTitles(String prefix, int limit);
+
+    /**
+     * 获取某一天数据的版本，由数据变化监听和写入维护在内存中，不访问文件
+     * @param date 日期
+     * @return 版本，数据变化后随之变化，可作为ETag；无法得知该天的变化时为null
+     */
+    String getDateVersion(Date date);
+
     /**
      * 获取该日期的任务数量
      * @param date
      * @return
      */
     int listDateTaskCount(Date date) throws IOException;
+
+    /**
+     * 获取一段日期内每天的任务数量
+     * @param from 开始日期（包含）
+     * @param to 结束日期（包含）
+     * @return epoch-day -> 任务数量，没有任务的日期不返回
+     */
+    Map<Long, Integer> listDateTaskCounts(Date from, Date to);
+
+    /**
+     * 订阅任务数量变化，变化合并后推送
+     * @return SSE连接，事件counts为epoch-day -> 任务数量，事件reset表示需要重新获取
+     */
+    SseEmitter subscribeTaskCountChanges();
+
+    /**
+     * 获取一年中每天、每月的任务数量，用于年度热力图
+     * @param year 年
+     * @return 每天、每月的任务数量及全年合计
+     */
+    DataYearCounts listYearTaskCounts(int year);
+
+    /**
+     * 获取事件缓存统计
+     * @return 命中、未命中、淘汰、失效次数及当前大小，以及实际读取次数、被合并的并发读取次数
+     */
+    Map<String, Long> getEventCacheStats();
 }
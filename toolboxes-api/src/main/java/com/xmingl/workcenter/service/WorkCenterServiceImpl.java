@@ -1,27 +1,262 @@
 package com.xmingl.workcenter.service;
 
 import com.xmingl.base.anno.AutoConfModule;
+import com.xmingl.base.data.DataCache;
+import com.xmingl.base.data.DataMergeIterator;
+import com.xmingl.base.data.DataPage;
+import com.xmingl.base.data.DataSingleFlight;
 import com.xmingl.base.data.DataUtil;
+import com.xmingl.base.data.DataWatcher;
+import com.xmingl.base.data.DataYearCounts;
 import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.FileUtil;
+import com.xmingl.base.search.TextHit;
 import com.xmingl.base.service.BaseService;
 import com.xmingl.workcenter.bean.EventInfo;
+import com.xmingl.workcenter.bean.EventSearchHit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @AutoConfModule
 public class WorkCenterServiceImpl extends BaseService implements WorkCenterService {
     public static Logger logger = LoggerFactory.getLogger(WorkCenterServiceImpl.class);
 
+    /**
+     * 事件缓存的最大估算字节数
+     */
+    private static final long EVENT_CACHE_MAX_WEIGHT = 32 * FileUtil.ONE_MB;
+
+    /**
+     * 按天缓存解析后的事件，天文件夹或段文件变化时由{@link DataWatcher}失效
+     */
+    private final DataCache<Long, List<EventInfo>> eventCache = new DataCache<>(EVENT_CACHE_MAX_WEIGHT, WorkCenterServiceImpl::weigh);
+
+    /**
+     * 合并同一天的并发读取，缓存未命中或未开启缓存时，同时查看同一天的请求只读取一次
+     */
+    private final DataSingleFlight<Long, List<EventInfo>> dayLoads = new DataSingleFlight<>();
+
+    /**
+     * 预热时预读缓存的最近天数（包含今天）
+     */
+    private static final int WARM_UP_DAYS = 7;
+
+    /**
+     * 事件标题的全文索引，预热时建立，数据变化时增量更新
+     */
+    private EventTitleIndex titleIndex;
+
+    /**
+     * 任务数量变化推送
+     */
+    private final EventCountNotifier countNotifier = new EventCountNotifier(BASE_FILE_PATH);
+
+    /**
+     * 冷数据保留天数，大于0时开启归档，默认不归档
+     */
+    @Value("${workcenter.archive-keep-days:0}")
+    private int archiveKeepDays;
+
+    @PostConstruct
+    public void watchData() {
+        titleIndex = new EventTitleIndex(BASE_FILE_PATH, getDataDirectory());
+        try {
+            DataWatcher.watch(getDataDirectory(), epochDay -> {
+                if (epochDay == DateUtil.INVALID_EPOCH_DAY) {
+                    dayLoads.forgetAll();
+                    eventCache.invalidateAll();
+                } else {
+                    dayLoads.forget(epochDay);
+                    eventCache.invalidate(epochDay);
+                }
+                titleIndex.onChange(epochDay);
+                countNotifier.onChange(epochDay);
+            });
+        } catch (IOException e) {
+            // 无法监听时不使用缓存
+            logger.error("watch {} , reason: {}", getDataDirectory(), e.getMessage());
+        }
+    }
+
+    /**
+     * 建立标题索引，预读最近几天的事件到缓存
+     */
+    @Override
+    public void warmUp() throws IOException {
+        titleIndex.start().join();
+        long today = DateUtil.getEpochDay(new Date());
+        for (long epochDay : DataUtil.listDataNums(BASE_FILE_PATH, today - WARM_UP_DAYS + 1, today).keySet()) {
+            getDay(epochDay);
+        }
+    }
+
     @Override
     public List<EventInfo> listEventInfosByDate(Date date) throws IOException {
         logger.info("查看{}工作日志", DateUtil.format(date, DateUtil.YYYY_MM_DD_ZH));
-        return DataUtil.loadDataList(BASE_FILE_PATH + DateUtil.format(date, DateUtil.shortFormat), EventInfo.class);
+        return getDay(DateUtil.getEpochDay(date));
+    }
+
+    @Override
+    public Map<Long, List<EventInfo>> listEventInfosByDates(List<Date> dates) throws IOException {
+        TreeSet<Long> days = new TreeSet<>();
+        for (Date date : dates) {
+            days.add(DateUtil.getEpochDay(date));
+        }
+        Map<Long, List<EventInfo>> result = new LinkedHashMap<>();
+        if (days.isEmpty()) {
+            return result;
+        }
+        logger.info("批量查看{}至{}共{}天工作日志", DateUtil.formatEpochDay(days.first()), DateUtil.formatEpochDay(days.last()), days.size());
+        // 列一次模块文件夹得到有数据的天，按日期顺序读取，没有数据的天不访问其文件夹
+        Map<Long, Integer> counts = DataUtil.listDataNums(BASE_FILE_PATH, days.first(), days.last());
+        for (long epochDay : days) {
+            result.put(epochDay, counts.containsKey(epochDay) ? getDay(epochDay) : Collections.emptyList());
+        }
+        return result;
+    }
+
+    /**
+     * 获取某一天的事件，经过缓存与并发合并
+     */
+    private List<EventInfo> getDay(long epochDay) throws IOException {
+        String filePath = BASE_FILE_PATH + DateUtil.formatEpochDay(epochDay);
+        if (!DataWatcher.isWatching(getDataDirectory())) {
+            return loadDay(epochDay, filePath);
+        }
+        return eventCache.get(epochDay, () -> {
+            // 先监听再读取，读取期间的变化会使本次结果不进入缓存
+            DataWatcher.watchDay(getDataDirectory(), epochDay);
+            return loadDay(epochDay, filePath);
+        });
+    }
+
+    private List<EventInfo> loadDay(long epochDay, String filePath) throws IOException {
+        return dayLoads.load(epochDay, () ->
+                Collections.unmodifiableList(DataUtil.loadDataList(filePath, EventInfo.class, getLoadParallelism())));
+    }
+
+    @Override
+    public DataPage<EventInfo> listEventInfosByDate(Date date, String cursor, int limit) throws IOException {
+        if (limit <= 0 && (cursor == null || cursor.isEmpty())) {
+            return new DataPage<>(listEventInfosByDate(date), null);
+        }
+        // 分页读取不经过缓存，只打开本页的文件
+        logger.info("分页查看{}工作日志, cursor: {} , limit: {}", DateUtil.format(date, DateUtil.YYYY_MM_DD_ZH), cursor, limit);
+        String filePath = BASE_FILE_PATH + DateUtil.format(date, DateUtil.shortFormat);
+        return DataUtil.loadDataPage(filePath, EventInfo.class, cursor, limit, getLoadParallelism());
+    }
+
+    @Override
+    public DataMergeIterator<EventInfo> iterateEventInfosBetween(Date from, Date to) {
+        return DataUtil.iterateDataRange(BASE_FILE_PATH, DateUtil.getEpochDay(from), DateUtil.getEpochDay(to), EventInfo.class);
+    }
+
+    @Override
+    public Map<Long, List<EventInfo>> listEventInfosBetween(Date from, Date to, int limit) throws IOException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("数量须大于0: " + limit);
+        }
+        logger.info("查看{}至{}工作日志, limit: {}", DateUtil.format(from, DateUtil.YYYY_MM_DD_ZH), DateUtil.format(to, DateUtil.YYYY_MM_DD_ZH), limit);
+        Map<Long, List<EventInfo>> result = new LinkedHashMap<>();
+        DataMergeIterator<EventInfo> events = iterateEventInfosBetween(from, to);
+        try {
+            for (int n = 0; n < limit && events.hasNext(); n++) {
+                EventInfo event = events.next();
+                result.computeIfAbsent(events.currentKey(), k -> new ArrayList<>()).add(event);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+    @Override
+    public List<EventSearchHit> searchEventInfos(String query, int limit) {
+        logger.info("搜索工作日志: {} , limit: {}", query, limit);
+        List<EventSearchHit> result = new ArrayList<>();
+        for (TextHit hit : titleIndex.search(query, limit)) {
+            EventSearchHit searchHit = new EventSearchHit();
+            searchHit.setDate(DateUtil.getDateOfEpochDay(hit.getEpochDay()));
+            searchHit.setFilename(hit.getName());
+            searchHit.setTitle(hit.getText());
+            searchHit.setScore(hit.getScore());
+            result.add(searchHit);
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> suggestTitles(String prefix, int limit) {
+        return titleIndex.suggest(prefix, limit);
+    }
+
+    /**
+     * 工作日志按天存放，忙碌的日期有数百个文件，开启并行读取
+     */
+    @Override
+    protected int getLoadParallelism() {
+        return 4;
+    }
+
+    /**
+     * 由配置开启：早于此天数的工作日志按月压缩归档
+     */
+    @Override
+    protected int getArchiveKeepDays() {
+        return archiveKeepDays;
+    }
+
+    @Override
+    public SseEmitter subscribeTaskCountChanges() {
+        return countNotifier.subscribe();
+    }
+
+    @Override
+    public DataYearCounts listYearTaskCounts(int year) {
+        logger.info("获取{}年工作数量", year);
+        return DataUtil.listDataYear(BASE_FILE_PATH, year);
+    }
+
+    @Override
+    public Map<String, Long> getEventCacheStats() {
+        Map<String, Long> stats = eventCache.stats();
+        stats.putAll(dayLoads.stats());
+        return stats;
+    }
+
+    /**
+     * 估算事件集合占用的字节数
+     */
+    private static long weigh(List<EventInfo> events) {
+        long weight = 64;
+        for (EventInfo event : events) {
+            weight += 64 + 2L * (length(event.getFilename()) + length(event.getTitle()));
+        }
+        return weight;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    @Override
+    public String getDateVersion(Date date) {
+        return DataWatcher.version(getDataDirectory(), DateUtil.getEpochDay(date));
     }
 
     @Override
@@ -30,4 +265,10 @@ public class WorkCenterServiceImpl extends BaseService implements WorkCenterServ
         return DataUtil.listDataNum(BASE_FILE_PATH + DateUtil.format(date, DateUtil.shortFormat));
     }
 
+    @Override
+    public Map<Long, Integer> listDateTaskCounts(Date from, Date to) {
+        logger.info("获取{}至{}工作数量", DateUtil.format(from, DateUtil.YYYY_MM_DD_ZH), DateUtil.format(to, DateUtil.YYYY_MM_DD_ZH));
+        return DataUtil.listDataNums(BASE_FILE_PATH, DateUtil.getEpochDay(from), DateUtil.getEpochDay(to));
+    }
+
 }
@@ -0,0 +1,148 @@
+package com.xmingl.base.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 二进制编码：往返编解码、修改字段后解码旧数据、字段序号
+ */
+public class BinaryDataCodecTest {
+
+    private final DataCodec codec = DataCodecs.BINARY;
+
+    @Test
+    public void roundTrip() throws IOException {
+        Event event = new Event();
+        event.title = "周报 weekly";
+        event.count = -3;
+        event.total = 1L << 40;
+        event.done = true;
+        event.score = 0.5;
+        event.priority = 7;
+        event.created = new Date(1700000000000L);
+        byte[] data = codec.encode(event);
+        assertTrue(DataCodecs.detect(data, 0, data.length) == codec);
+        // 只写序号，不写字段名
+        assertFalse(new String(data, StandardCharsets.ISO_8859_1).contains("priority"));
+
+        Event decoded = codec.decode(data, 0, data.length, Event.class);
+        assertEquals(event.title, decoded.title);
+        assertEquals(event.count, decoded.count);
+        assertEquals(event.total, decoded.total);
+        assertTrue(decoded.done);
+        assertEquals(event.score, decoded.score, 0);
+        assertEquals(event.priority, decoded.priority);
+        assertEquals(event.created, decoded.created);
+        assertNull(decoded.note);
+    }
+
+    @Test
+    public void decodeAtOffset() throws IOException {
+        Event event = new Event();
+        event.title = "offset";
+        byte[] data = codec.encode(event);
+        byte[] padded = new byte[data.length + 5];
+        System.arraycopy(data, 0, padded, 3, data.length);
+        assertEquals("offset", codec.decode(padded, 3, data.length, Event.class).title);
+    }
+
+    @Test
+    public void decodeAfterFieldsChanged() throws IOException {
+        Event event = new Event();
+        event.title = "changed";
+        event.count = 42;
+        event.total = 9;
+        event.note = "removed later";
+        byte[] data = codec.encode(event);
+
+        // 删除了note、score等字段，title改名为name，count由int改为String，新增了tags字段
+        ChangedEvent changed = codec.decode(data, 0, data.length, ChangedEvent.class);
+        assertEquals("changed", changed.name);
+        assertEquals(9, changed.total);
+        assertNull(changed.count);
+        assertNull(changed.tags);
+
+        // 反向：新字段被旧类型忽略
+        changed.tags = "a,b";
+        changed.count = "x";
+        data = codec.encode(changed);
+        Event back = codec.decode(data, 0, data.length, Event.class);
+        assertEquals("changed", back.title);
+        assertEquals(9, back.total);
+        assertEquals(0, back.count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fieldWithoutOrdinal() throws IOException {
+        codec.encode(new Unnumbered());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateOrdinal() throws IOException {
+        codec.encode(new Duplicated());
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownVersion() throws IOException {
+        byte[] data = {BinaryDataCodec.MAGIC, 9, 0};
+        codec.decode(data, 0, data.length, Counter.class);
+    }
+
+    public static class Event {
+        @DataField(1)
+        String title;
+        @DataField(2)
+        int count;
+        @DataField(3)
+        long total;
+        @DataField(4)
+        boolean done;
+        @DataField(5)
+        double score;
+        @DataField(6)
+        Integer priority;
+        @DataField(7)
+        Date created;
+        @DataField(8)
+        String note;
+    }
+
+    public static class ChangedEvent {
+        @DataField(1)
+        String name;
+        @DataField(2)
+        String count;
+        @DataField(3)
+        long total;
+        @DataField(9)
+        String tags;
+    }
+
+    public static class Counter {
+        @DataField(1)
+        int count;
+        @DataField(2)
+        boolean done;
+    }
+
+    public static class Unnumbered {
+        @DataField(1)
+        int count;
+        boolean done;
+    }
+
+    public static class Duplicated {
+        @DataField(1)
+        int count;
+        @DataField(1)
+        boolean done;
+    }
+}
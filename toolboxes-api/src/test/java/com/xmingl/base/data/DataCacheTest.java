@@ -0,0 +1,62 @@
+package com.xmingl.base.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 加载期间失效：只丢弃同一个键的加载结果
+ */
+public class DataCacheTest {
+
+    private final DataCache<String, String> cache = new DataCache<>(1024, String::length);
+
+    @Test
+    public void invalidateDuringLoadDropsResult() throws IOException {
+        assertEquals("old", cache.get("a", () -> {
+            cache.invalidate("a");
+            return "old";
+        }));
+        assertEquals("new", cache.get("a", () -> "new"));
+    }
+
+    @Test
+    public void invalidateOtherKeyKeepsResult() throws IOException {
+        cache.get("a", () -> {
+            cache.invalidate("b");
+            return "1";
+        });
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("1", cache.get("a", () -> {
+            loads.incrementAndGet();
+            return "2";
+        }));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void invalidateAllDuringLoadDropsResult() throws IOException {
+        cache.get("a", () -> {
+            cache.invalidateAll();
+            return "old";
+        });
+        assertEquals("new", cache.get("a", () -> "new"));
+    }
+
+    @Test
+    public void failedLoadIsNotCached() throws IOException {
+        try {
+            cache.get("a", () -> {
+                throw new IOException("load");
+            });
+        } catch (IOException expected) {
+            // 加载失败
+        }
+        cache.invalidate("a");
+        assertEquals("1", cache.get("a", () -> "1"));
+        assertEquals("1", cache.get("a", () -> "2"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.xmingl.base.data;
+
+import com.xmingl.workcenter.bean.EventInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON与二进制编码的编解码耗时对比，切换模块默认编码前先运行<br/>
+ * 运行：{@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.xmingl.base.data.DataCodecBenchmark}，
+ * 每条记录的字节数在启动时输出
+ *
+ * @author XMINGL
+ * @version 0.0.1 编码对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataCodecBenchmark {
+
+    @Param({"json", "binary"})
+    public String codecName;
+
+    private DataCodec codec;
+
+    private EventInfo event;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = "binary".equals(codecName) ? DataCodecs.BINARY : DataCodecs.JSON;
+        event = new EventInfo();
+        event.setFilename("1700000000000");
+        event.setTitle("整理本周工作日志并同步进度 weekly sync");
+        encoded = codec.encode(event);
+        System.out.println(codecName + " bytes: " + encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(event);
+    }
+
+    @Benchmark
+    public EventInfo decode() throws IOException {
+        return DataUtil.decode(encoded, 0, encoded.length, EventInfo.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DataCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
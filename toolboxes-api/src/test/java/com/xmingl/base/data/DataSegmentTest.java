@@ -0,0 +1,163 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.date.DateUtil;
+import com.xmingl.base.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 数据段：追加与读取、未写完的尾部、文件头错误
+ */
+public class DataSegmentTest {
+
+    private File moduleDir;
+
+    private File dayDir;
+
+    @Before
+    public void setUp() throws IOException {
+        moduleDir = Files.createTempDirectory("segment").toFile();
+        dayDir = new File(moduleDir, "20240105");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteQuietly(moduleDir);
+    }
+
+    @Test
+    public void appendAndRead() throws IOException {
+        DataSegment segment = DataSegment.of(dayDir);
+        segment.append(Arrays.asList(record("a", "1"), record("b", "2")), true);
+        segment.append(Arrays.asList(DataRecord.delete("a"), record("c", "3"), record("b", "4")), true);
+
+        assertEquals(Arrays.asList("b", "c"), segment.names());
+        assertEquals(2, segment.count());
+        Map<String, String> all = read(segment, null);
+        assertEquals("4", all.get("b"));
+        assertEquals("3", all.get("c"));
+        assertEquals(Collections.singletonMap("c", "3"), read(segment, Collections.singletonList("c")));
+    }
+
+    @Test
+    public void tornTailIsPreservedAndTruncated() throws IOException {
+        DataSegment segment = DataSegment.of(dayDir);
+        segment.append(Collections.singletonList(record("a", "1")), true);
+        File segmentFile = segment.getSegmentFile();
+        long committed = segmentFile.length();
+        // 追加时崩溃，只写入了下一条记录的前3个字节
+        Files.write(segmentFile.toPath(), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertEquals(Collections.singletonList("a"), segment.names());
+        segment.append(Collections.singletonList(record("b", "2")), true);
+        assertEquals(Arrays.asList("a", "b"), segment.names());
+        assertEquals("1", read(segment, null).get("a"));
+        File corrupt = new File(segmentFile.getParentFile(), segmentFile.getName() + DataSegment.CORRUPT_SUFFIX);
+        assertEquals(3, corrupt.length());
+        assertTrue(segmentFile.length() > committed);
+    }
+
+    @Test
+    public void corruptHeaderRefusesReadAndAppend() throws IOException {
+        File segmentFile = DataSegment.segmentFile(dayDir);
+        byte[] garbage = "not a segment".getBytes(StandardCharsets.UTF_8);
+        Files.write(segmentFile.toPath(), garbage);
+        DataSegment segment = DataSegment.of(dayDir);
+
+        try {
+            segment.names();
+            fail("segment with a bad header must not be read");
+        } catch (IOException expected) {
+            // 无法解析
+        }
+        try {
+            segment.append(Collections.singletonList(record("a", "1")), true);
+            fail("segment with a bad header must not be appended");
+        } catch (IOException expected) {
+            // 拒绝追加
+        }
+        assertEquals(Arrays.toString(garbage), Arrays.toString(Files.readAllBytes(segmentFile.toPath())));
+    }
+
+    @Test
+    public void tornHeaderIsEmpty() throws IOException {
+        File other = new File(moduleDir, "20240106");
+        DataSegment.of(other).append(Collections.singletonList(record("a", "1")), true);
+        byte[] header = Arrays.copyOf(Files.readAllBytes(DataSegment.segmentFile(other).toPath()), 3);
+        // 创建段时只写入了文件头的一部分
+        Files.write(DataSegment.segmentFile(dayDir).toPath(), header);
+        DataSegment segment = DataSegment.of(dayDir);
+
+        assertEquals(Collections.emptyList(), segment.names());
+        segment.append(Collections.singletonList(record("b", "2")), true);
+        assertEquals(Collections.singletonList("b"), segment.names());
+    }
+
+    @Test
+    public void deleteMasksArchivedRecord() throws IOException {
+        DataSegment segment = DataSegment.of(dayDir);
+        segment.append(Arrays.asList(record("a", "1"), record("b", "2")), true);
+        long epochDay = DateUtil.parseEpochDay(dayDir.getName());
+        assertEquals(1, DataArchiver.pack(moduleDir, Collections.singleton(epochDay)));
+        assertEquals(Arrays.asList("a", "b"), DataArchive.of(dayDir).names());
+
+        segment.append(Collections.singletonList(DataRecord.delete("a")), true);
+        assertEquals(Collections.singleton("a"), segment.deletedNames());
+        segment.append(Collections.singletonList(record("c", "3")), true);
+        // 再次归档时不再写入已删除的记录
+        assertEquals(1, DataArchiver.pack(moduleDir, Collections.singleton(epochDay)));
+        assertEquals(Arrays.asList("b", "c"), DataArchive.of(dayDir).names());
+        assertTrue(segment.deletedNames().isEmpty());
+    }
+
+    @Test
+    public void compactKeepsLatestRecords() throws IOException {
+        DataSegment segment = DataSegment.of(dayDir);
+        char[] padding = new char[1024];
+        Arrays.fill(padding, 'x');
+        for (int i = 0; i < 128; i++) {
+            segment.append(Arrays.asList(record("a", i + new String(padding)), record("b", "2")), false);
+        }
+        segment.append(Collections.singletonList(DataRecord.delete("b")), true);
+        long length = segment.getSegmentFile().length();
+        assertTrue(segment.needsCompaction());
+
+        segment.compact();
+        assertTrue(segment.getSegmentFile().length() < length);
+        assertFalse(segment.needsCompaction());
+        assertEquals(Collections.singletonList("a"), segment.names());
+        assertEquals(Collections.singleton("b"), segment.deletedNames());
+        assertEquals("127" + new String(padding), read(segment, null).get("a"));
+        // 重新打开时从新文件加载
+        assertEquals(Collections.singletonList("a"), DataSegment.of(dayDir).names());
+    }
+
+    private static DataRecord record(String name, String value) {
+        return new DataRecord(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> read(DataSegment segment, List<String> names) throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        segment.read(names == null ? null : new ArrayList<>(names),
+                (name, data, offset, length) -> values.put(name, new String(data, offset, length, StandardCharsets.UTF_8)));
+        return values;
+    }
+}
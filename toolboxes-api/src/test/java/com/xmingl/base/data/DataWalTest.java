@@ -0,0 +1,133 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 预写日志：截断写入后的重放、文件头错误、重放失败后拒绝写入
+ */
+public class DataWalTest {
+
+    private File moduleDir;
+
+    private File dayDir;
+
+    @Before
+    public void setUp() throws IOException {
+        moduleDir = Files.createTempDirectory("wal").toFile();
+        dayDir = new File(moduleDir, "20240105");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteQuietly(moduleDir);
+    }
+
+    @Test
+    public void replayAfterTruncatedWrite() throws IOException {
+        DataWal wal = DataWal.of(moduleDir);
+        wal.append(Collections.singletonList(transaction("a", "b")), true);
+        long committed = wal.length();
+        wal.append(Collections.singletonList(transaction("c")), true);
+        // 第二个事务只写入了一部分
+        try (RandomAccessFile file = new RandomAccessFile(wal.getWalFile(), "rw")) {
+            file.setLength(committed + 5);
+        }
+
+        assertEquals(1, wal.recover());
+        assertEquals(Arrays.asList("a", "b"), DataSegment.of(dayDir).names());
+        assertEquals(8, wal.getWalFile().length());
+        // 重放后可以继续写入
+        wal.append(Collections.singletonList(transaction("c")), true);
+        assertEquals(1, wal.recover());
+        assertEquals(Arrays.asList("a", "b", "c"), DataSegment.of(dayDir).names());
+    }
+
+    @Test
+    public void replayIsRepeatable() throws IOException {
+        DataWal wal = DataWal.of(moduleDir);
+        wal.append(Collections.singletonList(transaction("a")), true);
+        byte[] log = Files.readAllBytes(wal.getWalFile().toPath());
+        assertEquals(1, wal.recover());
+        // 段已追加但检查点前崩溃：再次重放结果不变
+        Files.write(wal.getWalFile().toPath(), log);
+        assertEquals(1, wal.recover());
+        assertEquals(Collections.singletonList("a"), DataSegment.of(dayDir).names());
+    }
+
+    @Test
+    public void corruptHeaderIsMovedAside() throws IOException {
+        File walFile = new File(moduleDir, DataWal.WAL_FILE_NAME);
+        Files.write(walFile.toPath(), "not a write-ahead log".getBytes(StandardCharsets.UTF_8));
+        DataWal wal = DataWal.of(moduleDir);
+
+        assertEquals(0, wal.recover());
+        String[] corrupt = moduleDir.list((dir, name) -> name.startsWith(DataWal.WAL_FILE_NAME + DataWal.CORRUPT_SUFFIX));
+        assertEquals(1, corrupt.length);
+        assertEquals(21, new File(moduleDir, corrupt[0]).length());
+        wal.append(Collections.singletonList(transaction("a")), true);
+        assertEquals(1, wal.recover());
+        assertEquals(Collections.singletonList("a"), DataSegment.of(dayDir).names());
+    }
+
+    @Test
+    public void failedReplayRefusesWrites() throws IOException {
+        DataWal wal = DataWal.of(moduleDir);
+        wal.append(Collections.singletonList(transaction("a")), true);
+        long length = wal.length();
+        // 段文件头错误，重放时无法追加
+        File segmentFile = DataSegment.segmentFile(dayDir);
+        Files.write(segmentFile.toPath(), "bad segment header".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            wal.recover();
+            fail("segment with a bad header must not be appended");
+        } catch (IOException expected) {
+            // 重放失败
+        }
+        try {
+            wal.append(Collections.singletonList(transaction("b")), true);
+            fail("append after a failed replay");
+        } catch (IOException expected) {
+            // 拒绝写入
+        }
+        try {
+            wal.checkpoint();
+            fail("checkpoint after a failed replay");
+        } catch (IOException expected) {
+            // 拒绝截断
+        }
+        assertEquals(length, wal.getWalFile().length());
+
+        assertTrue(segmentFile.delete());
+        assertEquals(1, wal.recover());
+        assertEquals(Collections.singletonList("a"), DataSegment.of(dayDir).names());
+    }
+
+    private Map<File, List<DataRecord>> transaction(String... names) {
+        Map<File, List<DataRecord>> transaction = new LinkedHashMap<>();
+        for (String name : names) {
+            transaction.computeIfAbsent(dayDir, k -> new ArrayList<>())
+                    .add(new DataRecord(name, ("{\"name\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8)));
+        }
+        return transaction;
+    }
+}
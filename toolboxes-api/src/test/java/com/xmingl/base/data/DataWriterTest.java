@@ -0,0 +1,70 @@
+package com.xmingl.base.data;
+
+import com.xmingl.base.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 批量写入：事务中有文件夹追加失败时重试，全部追加后才结束
+ */
+public class DataWriterTest {
+
+    private File moduleDir;
+
+    @Before
+    public void setUp() throws IOException {
+        moduleDir = Files.createTempDirectory("writer").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteQuietly(moduleDir);
+    }
+
+    @Test
+    public void failedAppendIsRetried() throws Exception {
+        File first = new File(moduleDir, "20240105");
+        File second = new File(moduleDir, "20240106");
+        // 段文件位置被文件夹占用，追加失败
+        File blocked = DataSegment.segmentFile(second);
+        assertTrue(blocked.mkdirs());
+        Map<File, List<DataRecord>> transaction = new LinkedHashMap<>();
+        transaction.put(first, Collections.singletonList(record("a")));
+        transaction.put(second, Collections.singletonList(record("b")));
+
+        CompletableFuture<Void> future = DataWriter.write(transaction, DataWriter.Durability.BATCH);
+        try {
+            future.get(2 * DataWriter.SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            fail("transaction must not complete while a directory is not appended");
+        } catch (TimeoutException expected) {
+            // 等待重试
+        }
+        assertTrue(DataWal.of(moduleDir).length() > 8);
+
+        assertTrue(blocked.delete());
+        future.get(5 * DataWriter.SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        assertEquals(Collections.singletonList("a"), DataSegment.of(first).names());
+        assertEquals(Collections.singletonList("b"), DataSegment.of(second).names());
+    }
+
+    private static DataRecord record(String name) {
+        return new DataRecord(name, ("{\"name\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+}
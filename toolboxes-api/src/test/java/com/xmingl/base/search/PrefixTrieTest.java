@@ -0,0 +1,47 @@
+package com.xmingl.base.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 前缀补全：增减频次、按频次排序
+ */
+public class PrefixTrieTest {
+
+    @Test
+    public void suggestByFrequency() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("周报", 1);
+        trie.add("周会", 3);
+        trie.add("周报整理", 2);
+        trie.add("Weekly", 1);
+
+        assertEquals(4, trie.size());
+        assertEquals(Arrays.asList("周会", "周报整理", "周报"), trie.suggest("周", 10));
+        assertEquals(Arrays.asList("周报整理", "周报"), trie.suggest("周报", 10));
+        assertEquals(Collections.singletonList("周会"), trie.suggest("周", 1));
+        assertEquals(Collections.singletonList("Weekly"), trie.suggest(" week", 10));
+        assertEquals("周会", trie.suggest("", 1).get(0));
+        assertTrue(trie.suggest("月", 10).isEmpty());
+    }
+
+    @Test
+    public void removeText() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("周报", 2);
+        trie.add("周会", 1);
+        trie.add("周报", -2);
+
+        assertEquals(1, trie.size());
+        assertEquals(Collections.singletonList("周会"), trie.suggest("周", 10));
+        assertTrue(trie.suggest("周报", 10).isEmpty());
+        // 不存在的文本减少频次无影响
+        trie.add("月报", -1);
+        assertEquals(1, trie.size());
+    }
+}
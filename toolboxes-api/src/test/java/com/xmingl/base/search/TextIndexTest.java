@@ -0,0 +1,105 @@
+package com.xmingl.base.search;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 全文索引：按天添加、替换与删除，搜索排序，保存与加载
+ */
+public class TextIndexTest {
+
+    @Test
+    public void addAndSearch() {
+        TextIndex index = new TextIndex();
+        index.replaceDay(19000, 1, docs("1", "整理周报", "2", "修复登录问题", "3", "weekly report review"));
+        index.replaceDay(19001, 1, docs("4", "写周报"));
+
+        assertEquals(4, index.size());
+        assertEquals(Arrays.asList("4", "1"), names(index.search("周报", 10)));
+        assertEquals(Collections.singletonList("3"), names(index.search("Report", 10)));
+        assertEquals(Collections.singletonList("4"), names(index.search("周报", 1)));
+        assertTrue(index.search("不存在", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+    }
+
+    @Test
+    public void replaceAndRemoveDay() {
+        TextIndex index = new TextIndex();
+        index.replaceDay(19000, 1, docs("1", "整理周报", "2", "修复登录问题"));
+        index.replaceDay(19000, 2, docs("1", "登录页改版"));
+
+        assertEquals(1, index.size());
+        assertEquals(Long.valueOf(2), index.stamp(19000));
+        assertTrue(index.search("周报", 10).isEmpty());
+        assertEquals(Collections.singletonList("1"), names(index.search("登录", 10)));
+
+        index.removeDay(19000);
+        assertEquals(0, index.size());
+        assertNull(index.stamp(19000));
+        assertTrue(index.search("登录", 10).isEmpty());
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        File dir = Files.createTempDirectory("index").toFile();
+        File file = new File(dir, "title.idx");
+        try {
+            TextIndex index = new TextIndex();
+            index.replaceDay(19000, 7, docs("1", "整理周报", "2", "修复登录问题"));
+            index.replaceDay(19001, 8, docs("3", "周报"));
+            index.removeDay(19001);
+            index.save(file);
+
+            TextIndex loaded = TextIndex.load(file);
+            assertEquals(2, loaded.size());
+            assertEquals(Long.valueOf(7), loaded.stamp(19000));
+            assertNull(loaded.stamp(19001));
+            assertEquals(Collections.singletonList("1"), names(loaded.search("周报", 10)));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void loadMissingOrCorruptIsEmpty() throws IOException {
+        File file = Files.createTempFile("title", ".idx").toFile();
+        try {
+            Files.write(file.toPath(), new byte[]{1, 2, 3});
+            assertEquals(0, TextIndex.load(file).size());
+            assertTrue(file.delete());
+            assertEquals(0, TextIndex.load(file).size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Map<String, String> docs(String... nameTexts) {
+        Map<String, String> docs = new LinkedHashMap<>();
+        for (int i = 0; i < nameTexts.length; i += 2) {
+            docs.put(nameTexts[i], nameTexts[i + 1]);
+        }
+        return docs;
+    }
+
+    private static List<String> names(List<TextHit> hits) {
+        List<String> names = new ArrayList<>();
+        for (TextHit hit : hits) {
+            names.add(hit.getName());
+        }
+        return names;
+    }
+}
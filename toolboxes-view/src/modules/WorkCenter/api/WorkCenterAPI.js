@@ -5,14 +5,92 @@ import SystemInfo from "@/SystemInfo";
 
 const baseUrl = SystemInfo.Api_Url + "/WorkCenter/";
 
+const ONE_DAY_MILL_SECONDS = 86400000;
+
+// 与后端一致的epoch-day（本地日期，1970-01-01为第0天），按天返回的结果以此为键
+export const toEpochDay = (date) => Math.floor(Date.UTC(date.getFullYear(), date.getMonth(), date.getDate()) / ONE_DAY_MILL_SECONDS);
+
 export const listByDates = (date = new Date().getTime()) => {
     let data = {millsecord: date};
-    return axios.post(baseUrl + "listByDates", qs.stringify(data));
+    // GET请求，浏览器缓存结果并用ETag校验，数据未变化时服务端返回304
+    return axios.get(baseUrl + "listByDates", {params: data});
+}
+
+// 分页读取某一天的事件，cursor为上一页返回的nextCursor
+export const listPageByDates = (date = new Date().getTime(), cursor = "", limit = 0) => {
+    let data = {millsecord: date, cursor: cursor, limit: limit};
+    return axios.get(baseUrl + "listPageByDates", {params: data});
+}
+
+// 流式读取某一天的事件（NDJSON），每解析出一个事件回调一次
+// 服务繁忙（503）等非2xx响应时reject，调用方可改用listByDates
+export const streamByDates = async (date = new Date().getTime(), onEvent = () => {}) => {
+    const response = await fetch(baseUrl + "streamByDates?millsecord=" + date);
+    if (!response.ok) {
+        const error = new Error("streamByDates failed: " + response.status);
+        error.status = response.status;
+        throw error;
+    }
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder("utf-8");
+    let buffer = "";
+    for (; ;) {
+        const {done, value} = await reader.read();
+        buffer += decoder.decode(value || new Uint8Array(0), {stream: !done});
+        let lines = buffer.split("\n");
+        buffer = lines.pop();
+        lines.filter(line => line).forEach(line => onEvent(JSON.parse(line)));
+        if (done) {
+            break;
+        }
+    }
+    if (buffer) {
+        onEvent(JSON.parse(buffer));
+    }
+}
+
+// 一次请求读取多天的事件，返回epoch-day -> 当天的事件
+export const listByDateList = (dates = []) => {
+    let data = {millsecords: dates};
+    return axios.post(baseUrl + "listByDateList", qs.stringify(data, {arrayFormat: "repeat"}));
 }
 
 export const listDateTaskCount = (date = new Date().getTime()) => {
     let data = {millsecord: date};
-    return axios.post(baseUrl + "listDateTaskCount", qs.stringify(data));
+    return axios.get(baseUrl + "listDateTaskCount", {params: data});
+}
+
+export const listDateTaskCounts = (from, to) => {
+    let data = {from: from, to: to};
+    return axios.post(baseUrl + "listDateTaskCounts", qs.stringify(data));
+}
+
+// 订阅任务数量变化（SSE），一个页面保持一个连接，断开后浏览器自动重连
+export const subscribeTaskCounts = (onCounts = () => {}, onReset = () => {}) => {
+    const source = new EventSource(baseUrl + "subscribeTaskCounts");
+    source.addEventListener("counts", event => onCounts(JSON.parse(event.data)));
+    source.addEventListener("reset", () => onReset());
+    return source;
+}
+
+export const listYearTaskCounts = (year = new Date().getFullYear()) => {
+    let data = {year: year};
+    return axios.post(baseUrl + "listYearTaskCounts", qs.stringify(data));
+}
+
+export const listBetween = (from, to, limit = 500) => {
+    let data = {from: from, to: to, limit: limit};
+    return axios.post(baseUrl + "listBetween", qs.stringify(data));
+}
+
+export const search = (q, limit = 20) => {
+    let data = {q: q, limit: limit};
+    return axios.post(baseUrl + "search", qs.stringify(data));
+}
+
+export const suggest = (prefix, limit = 10) => {
+    let data = {prefix: prefix, limit: limit};
+    return axios.post(baseUrl + "suggest", qs.stringify(data));
 }
 
 export default {};
\ No newline at end of file